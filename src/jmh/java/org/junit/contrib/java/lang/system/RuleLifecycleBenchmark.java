@@ -0,0 +1,71 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.junit.contrib.java.lang.system.Rules.evaluate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead that each rule adds to a test: setting up the rule
+ * before the test and restoring the original state afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RuleLifecycleBenchmark {
+	@Benchmark
+	public void clearSystemProperties() throws Throwable {
+		evaluate(new ClearSystemProperties("dummy.property"));
+	}
+
+	@Benchmark
+	public void disallowWriteToSystemOut() throws Throwable {
+		evaluate(new DisallowWriteToSystemOut());
+	}
+
+	@Benchmark
+	public void environmentVariables() throws Throwable {
+		evaluate(new EnvironmentVariables().set("DUMMY_VARIABLE", "value"));
+	}
+
+	@Benchmark
+	public void expectedSystemExit() throws Throwable {
+		evaluate(ExpectedSystemExit.none());
+	}
+
+	@Benchmark
+	public void provideSystemProperty() throws Throwable {
+		evaluate(new ProvideSystemProperty("dummy.property", "value"));
+	}
+
+	@Benchmark
+	public void restoreSystemProperties() throws Throwable {
+		evaluate(new RestoreSystemProperties());
+	}
+
+	@Benchmark
+	public void systemOutRule() throws Throwable {
+		evaluate(new SystemOutRule());
+	}
+
+	@Benchmark
+	public void systemOutRuleWithLog() throws Throwable {
+		evaluate(new SystemOutRule().enableLog().mute());
+	}
+
+	@Benchmark
+	public void textFromStandardInputStream() throws Throwable {
+		evaluate(TextFromStandardInputStream.emptyStandardInputStream());
+	}
+}
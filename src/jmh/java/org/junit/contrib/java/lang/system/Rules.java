@@ -0,0 +1,110 @@
+package org.junit.contrib.java.lang.system;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Helper methods for running rules outside of JUnit.
+ */
+class Rules {
+	private static final Statement EMPTY_STATEMENT = new Statement() {
+		@Override
+		public void evaluate() {
+		}
+	};
+
+	/**
+	 * Executes a test without code. This is the overhead that a rule adds to
+	 * each test.
+	 */
+	static void evaluate(TestRule rule) throws Throwable {
+		rule.apply(EMPTY_STATEMENT, Description.EMPTY).evaluate();
+	}
+
+	/**
+	 * Provides the {@code System.out} that the rule installs. The stream is
+	 * still usable after the rule's statement has been finished. This allows
+	 * benchmarks to measure the writes without the costs of setting up the
+	 * rule for each invocation.
+	 */
+	static PrintStream systemOutOf(TestRule rule) throws Throwable {
+		final PrintStream[] stream = new PrintStream[1];
+		rule.apply(new Statement() {
+			@Override
+			public void evaluate() {
+				stream[0] = System.out;
+			}
+		}, Description.EMPTY).evaluate();
+		return stream[0];
+	}
+
+	/**
+	 * Provides the {@code System.in} that the rule installs.
+	 *
+	 * @see #systemOutOf(TestRule)
+	 */
+	static InputStream systemInOf(TestRule rule) throws Throwable {
+		final InputStream[] stream = new InputStream[1];
+		rule.apply(new Statement() {
+			@Override
+			public void evaluate() {
+				stream[0] = System.in;
+			}
+		}, Description.EMPTY).evaluate();
+		return stream[0];
+	}
+
+	/**
+	 * Starts the rule's statement in a background thread. The statement
+	 * runs until {@link Running#stop()} is called. This allows benchmarks to
+	 * keep a global state that a rule provides while they are running.
+	 */
+	static Running startInBackground(TestRule rule) throws Throwable {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch stop = new CountDownLatch(1);
+		final Throwable[] failure = new Throwable[1];
+		final Statement statement = rule.apply(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				started.countDown();
+				stop.await();
+			}
+		}, Description.EMPTY);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					statement.evaluate();
+				} catch (Throwable e) {
+					failure[0] = e;
+					started.countDown();
+				}
+			}
+		};
+		thread.start();
+		started.await();
+		if (failure[0] != null)
+			throw failure[0];
+		return new Running(stop, thread);
+	}
+
+	static class Running {
+		private final CountDownLatch stop;
+		private final Thread thread;
+
+		Running(CountDownLatch stop, Thread thread) {
+			this.stop = stop;
+			this.thread = thread;
+		}
+
+		void stop() throws InterruptedException {
+			stop.countDown();
+			thread.join();
+		}
+	}
+}
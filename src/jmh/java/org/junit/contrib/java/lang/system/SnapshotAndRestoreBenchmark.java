@@ -0,0 +1,64 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.junit.contrib.java.lang.system.Rules.evaluate;
+import static org.junit.contrib.java.lang.system.Rules.startInBackground;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the rules that save and restore the system properties or the
+ * environment variables scale with the number of properties and variables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SnapshotAndRestoreBenchmark {
+	@Param({"10", "1000", "10000"})
+	public int numberOfEntries;
+
+	private Rules.Running additionalProperties;
+	private Rules.Running additionalVariables;
+
+	@Setup
+	public void addEntries() throws Throwable {
+		ProvideSystemProperty properties = new ProvideSystemProperty();
+		EnvironmentVariables variables = new EnvironmentVariables();
+		for (int i = 0; i < numberOfEntries; ++i) {
+			properties.and("benchmark.property." + i, "value " + i);
+			variables.set("BENCHMARK_VARIABLE_" + i, "value " + i);
+		}
+		additionalProperties = startInBackground(properties);
+		additionalVariables = startInBackground(variables);
+	}
+
+	@TearDown
+	public void removeEntries() throws InterruptedException {
+		additionalProperties.stop();
+		additionalVariables.stop();
+	}
+
+	@Benchmark
+	public void environmentVariables() throws Throwable {
+		evaluate(new EnvironmentVariables().set("DUMMY_VARIABLE", "value"));
+	}
+
+	@Benchmark
+	public void restoreSystemProperties() throws Throwable {
+		evaluate(new RestoreSystemProperties());
+	}
+}
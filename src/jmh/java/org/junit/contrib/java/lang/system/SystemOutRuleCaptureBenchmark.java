@@ -0,0 +1,108 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.Arrays.fill;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.contrib.java.lang.system.Rules.systemOutOf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of a muted {@link SystemOutRule} with enabled log.
+ * {@link #writeByteByByte()} uses the per byte path of the capture stream and
+ * {@link #writeAtOnce()} the bulk path. The benchmarks with the prefix
+ * {@code baseline} write to the stream arrangement that the rule used before
+ * it forwarded bulk writes: a {@code PrintStream} around a tee that only
+ * implements {@code write(int)} and logs to a
+ * {@code ByteArrayOutputStream}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SystemOutRuleCaptureBenchmark {
+	@Param({"16", "1024", "65536"})
+	public int size;
+
+	private final SystemOutRule systemOutRule = new SystemOutRule()
+		.mute()
+		.enableLog();
+	private PrintStream systemOut;
+	private final ByteByByteTee baselineTee = new ByteByByteTee();
+	private final PrintStream baselineSystemOut
+		= new PrintStream(baselineTee, true);
+	private byte[] data;
+
+	@Setup
+	public void setUp() throws Throwable {
+		systemOut = systemOutOf(systemOutRule);
+		data = new byte[size];
+		fill(data, (byte) 'x');
+	}
+
+	@Benchmark
+	public void writeByteByByte() {
+		for (byte b: data)
+			systemOut.write(b);
+		systemOutRule.clearLog();
+	}
+
+	@Benchmark
+	public void writeAtOnce() {
+		systemOut.write(data, 0, data.length);
+		systemOutRule.clearLog();
+	}
+
+	@Benchmark
+	public void baselineWriteByteByByte() {
+		for (byte b: data)
+			baselineSystemOut.write(b);
+		baselineTee.log.reset();
+	}
+
+	@Benchmark
+	public void baselineWriteAtOnce() {
+		baselineSystemOut.write(data, 0, data.length);
+		baselineTee.log.reset();
+	}
+
+	/**
+	 * The tee of a muted rule with enabled log before bulk writes have been
+	 * forwarded. Bulk writes are split into single bytes by
+	 * {@link OutputStream#write(byte[], int, int)}.
+	 */
+	private static class ByteByByteTee extends OutputStream {
+		final OutputStream originalStream = new ByteArrayOutputStream();
+		final ByteArrayOutputStream failureLog = new ByteArrayOutputStream();
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		volatile boolean originalStreamMuted = true;
+		volatile boolean failureLogMuted = true;
+		volatile boolean logMuted = false;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!originalStreamMuted)
+				originalStream.write(b);
+			if (!failureLogMuted)
+				failureLog.write(b);
+			if (!logMuted)
+				log.write(b);
+		}
+	}
+}
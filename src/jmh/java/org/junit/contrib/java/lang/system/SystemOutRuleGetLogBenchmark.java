@@ -0,0 +1,86 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.junit.contrib.java.lang.system.Rules.systemOutOf;
+
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading a large log of {@link SystemOutRule}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SystemOutRuleGetLogBenchmark {
+	private static final String LINE
+		= "a line of text that is written by the code under test";
+
+	@Param({"1048576", "67108864"})
+	public int sizeOfLog;
+
+	private final SystemOutRule systemOutRule = new SystemOutRule()
+		.mute()
+		.enableLog();
+	private PrintStream systemOut;
+
+	@Setup
+	public void setUp() throws Throwable {
+		systemOut = systemOutOf(systemOutRule);
+	}
+
+	/**
+	 * Creates the log for each iteration, because
+	 * {@link #getLogAfterNewLine()} lets it grow.
+	 */
+	@Setup(Level.Iteration)
+	public void createLog() {
+		systemOutRule.clearLog();
+		//count the bytes instead of reading the log after every line
+		int bytesPerLine = (LINE + System.getProperty("line.separator"))
+			.getBytes().length;
+		for (long written = 0; written < sizeOfLog; written += bytesPerLine)
+			systemOut.println(LINE);
+	}
+
+	@Benchmark
+	public String getLog() {
+		return systemOutRule.getLog();
+	}
+
+	@Benchmark
+	public String getLogAfterNewLine() {
+		systemOut.println(LINE);
+		return systemOutRule.getLog();
+	}
+
+	@Benchmark
+	public String getLogWithNormalizedLineSeparator() {
+		return systemOutRule.getLogWithNormalizedLineSeparator();
+	}
+
+	@Benchmark
+	public byte[] getLogAsBytes() {
+		return systemOutRule.getLogAsBytes();
+	}
+
+	@Benchmark
+	public String getLineInTheMiddle() {
+		return systemOutRule.getLine(systemOutRule.getLineCount() / 2);
+	}
+}
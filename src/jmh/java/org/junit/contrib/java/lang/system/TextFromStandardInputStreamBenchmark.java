@@ -0,0 +1,68 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.contrib.java.lang.system.Rules.systemInOf;
+import static org.junit.contrib.java.lang.system.TextFromStandardInputStream.emptyStandardInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast the code under test can read the text that is provided
+ * by {@link TextFromStandardInputStream}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TextFromStandardInputStreamBenchmark {
+	@Param({"10", "10000"})
+	public int numberOfLines;
+
+	private final TextFromStandardInputStream systemInMock
+		= emptyStandardInputStream();
+	private final byte[] buffer = new byte[8192];
+	private InputStream systemIn;
+	private String[] lines;
+
+	@Setup
+	public void setUp() throws Throwable {
+		systemIn = systemInOf(systemInMock);
+		lines = new String[numberOfLines];
+		for (int i = 0; i < numberOfLines; ++i)
+			lines[i] = "line " + i;
+	}
+
+	@Benchmark
+	public int readByteByByte() throws IOException {
+		systemInMock.provideLines(lines);
+		int numberOfBytes = 0;
+		while (systemIn.read() != -1)
+			++numberOfBytes;
+		return numberOfBytes;
+	}
+
+	@Benchmark
+	public int readBlocks() throws IOException {
+		systemInMock.provideLines(lines);
+		int numberOfBytes = 0;
+		int length;
+		while ((length = systemIn.read(buffer)) != -1)
+			numberOfBytes += length;
+		return numberOfBytes;
+	}
+}
@@ -0,0 +1,22 @@
+package org.junit.contrib.java.lang.system;
+
+/**
+ * Receives the bytes that are written to {@code System.out} or
+ * {@code System.err}.
+ *
+ * @see SystemOutRule#forEachChunk(ChunkConsumer)
+ * @see SystemErrRule#forEachChunk(ChunkConsumer)
+ */
+public interface ChunkConsumer {
+	/**
+	 * Called on the writing thread for every write. The array belongs to the
+	 * writer and may be modified after this method returns. Therefore the
+	 * consumer must copy the bytes if it wants to keep them.
+	 * Different threads may call this method concurrently.
+	 *
+	 * @param bytes an array with the written bytes.
+	 * @param offset the index of the first written byte.
+	 * @param length the number of written bytes.
+	 */
+	void accept(byte[] bytes, int offset, int length);
+}
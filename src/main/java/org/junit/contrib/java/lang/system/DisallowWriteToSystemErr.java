@@ -26,12 +26,45 @@ import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYS
  * }
  * </pre>
  *
+ * <p>Code that writes a few lines at startup can be tested with a budget.
+ * The test fails as soon as more bytes or lines are written than allowed.
+ * The failure tells you which line exceeded the budget and where it has been
+ * written.
+ * <pre>
+ * public class TestClass {
+ *   &#064;Rule
+ *   public final DisallowWriteToSystemErr disallowWrite
+ *     = new DisallowWriteToSystemErr().allowAtMost(1024, 10);
+ *
+ *   &#064;Test
+ *   public void this_test_fails() {
+ *     for (int i = 0; i &lt; 100; ++i)
+ *       System.err.println("item " + i);
+ *   }
+ * }
+ * </pre>
+ *
  * @see DisallowWriteToSystemOut
  * @since 1.14.0
  */
 public class DisallowWriteToSystemErr implements TestRule {
 	private final DisallowWrite disallowWrite = new DisallowWrite(SYSTEM_ERR);
 
+	/**
+	 * Allows the test to write a limited amount of text to
+	 * {@code System.err}. The rule only counts the bytes and lines. It
+	 * does not store them.
+	 *
+	 * @param numberOfBytes the maximum number of bytes.
+	 * @param numberOfLines the maximum number of lines.
+	 * @return the rule itself.
+	 * @throws IllegalArgumentException if one of the numbers is negative.
+	 */
+	public DisallowWriteToSystemErr allowAtMost(long numberOfBytes, long numberOfLines) {
+		disallowWrite.allowAtMost(numberOfBytes, numberOfLines);
+		return this;
+	}
+
 	public Statement apply(final Statement base, Description description) {
 		return disallowWrite.createStatement(base);
 	}
@@ -0,0 +1,18 @@
+package org.junit.contrib.java.lang.system;
+
+/**
+ * Receives every line that is written to {@code System.out} or
+ * {@code System.err}.
+ *
+ * @see SystemOutRule#forEachLine(LineConsumer)
+ * @see SystemErrRule#forEachLine(LineConsumer)
+ */
+public interface LineConsumer {
+	/**
+	 * Called on the writing thread as soon as the thread completes a line.
+	 * Different threads may call this method concurrently.
+	 *
+	 * @param line the line without the line separator.
+	 */
+	void accept(String line);
+}
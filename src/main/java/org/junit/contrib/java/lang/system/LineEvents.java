@@ -0,0 +1,137 @@
+package org.junit.contrib.java.lang.system;
+
+import static java.util.regex.Pattern.compile;
+
+import java.util.regex.Pattern;
+
+import org.junit.contrib.java.lang.system.internal.LineEventLog;
+
+/**
+ * The lines that have been written to {@code System.out} or
+ * {@code System.err} together with the time when they have been completed and
+ * the thread that has written them. The events are provided by
+ * {@link SystemOutRule#getLineEvents()} and
+ * {@link SystemErrRule#getLineEvents()}. They are immutable. Lines that are
+ * written afterwards are not added.
+ *
+ * <p>All times are values of {@link System#nanoTime()}. They can only be
+ * compared with each other.
+ *
+ * <pre>
+ * LineEvents events = systemOutRule.getLineEvents();
+ * int index = events.indexOfFirstLineMatching("response");
+ * assertTrue(events.getNanosSinceStart(index) &lt; MILLISECONDS.toNanos(200));
+ * </pre>
+ */
+public final class LineEvents {
+	private final LineEventLog log;
+
+	LineEvents(LineEventLog log) {
+		this.log = log;
+	}
+
+	/**
+	 * Returns the number of lines.
+	 *
+	 * @return the number of lines.
+	 */
+	public int size() {
+		return log.size();
+	}
+
+	/**
+	 * Returns the text of a line without the line separator.
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the text of the line.
+	 * @throws IndexOutOfBoundsException if there is no line with this index.
+	 */
+	public String getLine(int index) {
+		checkIndex(index);
+		return log.getLine(index);
+	}
+
+	/**
+	 * Returns the value of {@link System#nanoTime()} when the test has been
+	 * started or when the log has been cleared.
+	 *
+	 * @return the start time in nanoseconds.
+	 */
+	public long getStartTime() {
+		return log.getStartTime();
+	}
+
+	/**
+	 * Returns the value of {@link System#nanoTime()} when the line has been
+	 * completed.
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the time in nanoseconds.
+	 * @throws IndexOutOfBoundsException if there is no line with this index.
+	 */
+	public long getNanoTime(int index) {
+		checkIndex(index);
+		return log.getNanoTime(index);
+	}
+
+	/**
+	 * Returns the nanoseconds between the {@link #getStartTime() start} and
+	 * the completion of the line.
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the time since the start in nanoseconds.
+	 * @throws IndexOutOfBoundsException if there is no line with this index.
+	 */
+	public long getNanosSinceStart(int index) {
+		return getNanoTime(index) - getStartTime();
+	}
+
+	/**
+	 * Returns the {@link Thread#getId() id} of the thread that has written
+	 * the line.
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the id of the thread.
+	 * @throws IndexOutOfBoundsException if there is no line with this index.
+	 */
+	public long getThreadId(int index) {
+		checkIndex(index);
+		return log.getThreadId(index);
+	}
+
+	/**
+	 * Returns the name of the thread that has written the line. This is the
+	 * name that the thread had when the line has been completed.
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the name of the thread.
+	 * @throws IndexOutOfBoundsException if there is no line with this index.
+	 */
+	public String getThreadName(int index) {
+		checkIndex(index);
+		return log.getThreadName(index);
+	}
+
+	/**
+	 * Returns the index of the first line that contains a match of the
+	 * regular expression.
+	 *
+	 * @param regex the regular expression.
+	 * @return the index of the first matching line or -1 if no line matches.
+	 * @throws java.util.regex.PatternSyntaxException if the regular
+	 * expression's syntax is invalid.
+	 */
+	public int indexOfFirstLineMatching(String regex) {
+		Pattern pattern = compile(regex);
+		for (int i = 0; i < size(); ++i)
+			if (pattern.matcher(log.getLine(i)).find())
+				return i;
+		return -1;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("There are " + size()
+				+ " line events, hence there is no event " + index + ".");
+	}
+}
@@ -0,0 +1,105 @@
+package org.junit.contrib.java.lang.system;
+
+import org.junit.contrib.java.lang.system.internal.WriteStatistics;
+
+/**
+ * Numbers of the calls that have been made to {@code System.out} or
+ * {@code System.err} since the test started. They are provided by
+ * {@link SystemOutRule#getStats()} and {@link SystemErrRule#getStats()} and
+ * help to find code that writes inefficiently, e.g. code that writes byte by
+ * byte to an unbuffered stream or flushes after every byte. The stats are
+ * immutable. Calls that are made afterwards are not counted.
+ *
+ * <p>Writes are counted as the {@code PrintStream} passes them to its
+ * underlying stream. A call of {@code write(int)} is a single byte write.
+ * Calls of {@code write(byte[], int, int)} and the {@code print} methods are
+ * bulk writes. {@code println(String)} may be made up of two bulk writes: the
+ * text and the line separator. Only calls of {@code flush()} are counted as
+ * flushes. The {@code PrintStream}'s automatic flushes are not counted.
+ *
+ * <pre>
+ * OutputStats stats = systemOutRule.getStats();
+ * assertTrue(stats.getNumberOfFlushes() &lt; 10);
+ * assertEquals(0, stats.getNumberOfSingleByteWrites());
+ * </pre>
+ */
+public final class OutputStats {
+	private final WriteStatistics statistics;
+
+	OutputStats(WriteStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Returns the number of calls that wrote a single byte.
+	 *
+	 * @return the number of single byte writes.
+	 */
+	public long getNumberOfSingleByteWrites() {
+		return statistics.getNumberOfSingleByteWrites();
+	}
+
+	/**
+	 * Returns the number of calls that wrote an array of bytes.
+	 *
+	 * @return the number of bulk writes.
+	 */
+	public long getNumberOfBulkWrites() {
+		return statistics.getNumberOfBulkWrites();
+	}
+
+	/**
+	 * Returns the histogram of the sizes of the bulk writes. The element
+	 * with index 0 is the number of writes of zero bytes. The element with
+	 * index {@code i > 0} is the number of writes of at least
+	 * 2<sup>i-1</sup> and less than 2<sup>i</sup> bytes, e.g. index 3 is the
+	 * number of writes of 4 to 7 bytes. The array has 33 elements.
+	 *
+	 * @return the histogram of the sizes of the bulk writes.
+	 */
+	public long[] getBulkWriteSizeHistogram() {
+		return statistics.getBulkWriteSizeHistogram();
+	}
+
+	/**
+	 * Returns the number of explicit calls of {@code flush()}.
+	 *
+	 * @return the number of flushes.
+	 */
+	public long getNumberOfFlushes() {
+		return statistics.getNumberOfFlushes();
+	}
+
+	/**
+	 * Returns the number of bytes of all writes.
+	 *
+	 * @return the number of bytes.
+	 */
+	public long getNumberOfBytes() {
+		return statistics.getNumberOfBytes();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder histogram = new StringBuilder();
+		long[] numberOfWrites = getBulkWriteSizeHistogram();
+		for (int i = 0; i < numberOfWrites.length; ++i)
+			if (numberOfWrites[i] != 0) {
+				if (histogram.length() != 0)
+					histogram.append(", ");
+				histogram.append(sizesOfBucket(i)).append(" bytes: ")
+					.append(numberOfWrites[i]);
+			}
+		return getNumberOfSingleByteWrites() + " single byte writes, "
+			+ getNumberOfBulkWrites() + " bulk writes ("
+			+ histogram + "), " + getNumberOfFlushes() + " flushes, "
+			+ getNumberOfBytes() + " bytes";
+	}
+
+	private static String sizesOfBucket(int index) {
+		if (index <= 1)
+			return Integer.toString(index);
+		long min = 1L << (index - 1);
+		return min + "-" + (2 * min - 1);
+	}
+}
@@ -0,0 +1,63 @@
+package org.junit.contrib.java.lang.system;
+
+import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_ERR;
+import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_OUT;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * The {@code SharedSystemOutAndSystemErr} rule replaces {@code System.out}
+ * and {@code System.err} only once for all tests of a class. Without this
+ * rule each {@link SystemOutRule}, {@link SystemErrRule},
+ * {@link DisallowWriteToSystemOut} and {@link DisallowWriteToSystemErr}
+ * creates a new {@code PrintStream} for each test and replaces
+ * {@code System.out} or {@code System.err} with it. With this rule the
+ * streams stay the same and the rules only exchange the target of the
+ * streams. This is cheaper if you have many tests.
+ *
+ * <pre>
+ * public class SystemOutTest {
+ *   &#064;ClassRule
+ *   public static final SharedSystemOutAndSystemErr sharedStreams
+ *     = new SharedSystemOutAndSystemErr();
+ *
+ *   &#064;Rule
+ *   public final SystemOutRule systemOutRule = new SystemOutRule().enableLog();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     System.out.print("some text");
+ *     assertEquals("some text", systemOutRule.getLog());
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>The rules cannot install their own streams while the shared streams
+ * are installed. Therefore {@link SystemOutRule#captureWithoutContention()}
+ * and {@link SystemOutRule#captureChars()} (and the same methods of
+ * {@link SystemErrRule}) have no effect on how the output is written. The
+ * threads lock the shared stream and printed text is encoded by it. The log
+ * is stored like without the shared streams.
+ *
+ * <p>Use the {@link SharedSystemOutAndSystemErrListener} if you want to
+ * replace the streams only once for the whole test run.
+ */
+public class SharedSystemOutAndSystemErr implements TestRule {
+	public Statement apply(final Statement base, Description description) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				SYSTEM_OUT.installSharedStream();
+				SYSTEM_ERR.installSharedStream();
+				try {
+					base.evaluate();
+				} finally {
+					SYSTEM_ERR.uninstallSharedStream();
+					SYSTEM_OUT.uninstallSharedStream();
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,40 @@
+package org.junit.contrib.java.lang.system;
+
+import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_ERR;
+import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_OUT;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * The {@code SharedSystemOutAndSystemErrListener} replaces
+ * {@code System.out} and {@code System.err} only once for the whole test run.
+ * It does the same as {@link SharedSystemOutAndSystemErr} but for all test
+ * classes. You have to register it with your build tool. E.g. for the Maven
+ * Surefire Plugin
+ *
+ * <pre>
+ * &lt;configuration&gt;
+ *   &lt;properties&gt;
+ *     &lt;property&gt;
+ *       &lt;name&gt;listener&lt;/name&gt;
+ *       &lt;value&gt;org.junit.contrib.java.lang.system.SharedSystemOutAndSystemErrListener&lt;/value&gt;
+ *     &lt;/property&gt;
+ *   &lt;/properties&gt;
+ * &lt;/configuration&gt;
+ * </pre>
+ */
+public class SharedSystemOutAndSystemErrListener extends RunListener {
+	@Override
+	public void testRunStarted(Description description) throws Exception {
+		SYSTEM_OUT.installSharedStream();
+		SYSTEM_ERR.installSharedStream();
+	}
+
+	@Override
+	public void testRunFinished(Result result) {
+		SYSTEM_ERR.uninstallSharedStream();
+		SYSTEM_OUT.uninstallSharedStream();
+	}
+}
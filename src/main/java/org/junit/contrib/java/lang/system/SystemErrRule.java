@@ -2,6 +2,14 @@ package org.junit.contrib.java.lang.system;
 
 import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_ERR;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import org.junit.contrib.java.lang.system.internal.LineObserver;
 import org.junit.contrib.java.lang.system.internal.LogPrintStream;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
@@ -49,6 +57,47 @@ import org.junit.runners.model.Statement;
  * }
  * </pre>
  *
+ * <p>Assertions about single lines don't need the whole log.
+ * {@link #getLine(int)}, {@link #getLines(int, int)} and {@link #lines()}
+ * read the lines directly from the log.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule().enableLog();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     System.err.println("first line");
+ *     System.err.println("second line");
+ *     assertEquals(2, systemErrRule.getLineCount());
+ *     assertEquals("second line", systemErrRule.getLine(1));
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>The output of a command line tool is often compared with a file that
+ * contains the expected output. {@link #assertLogMatchesFile(File)} compares
+ * the log with such a file without reading the file to the heap. Therefore
+ * it can be used for large files, too.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule().enableLog();
+ *
+ *   &#064;Test
+ *   public void test() throws Exception {
+ *     new Tool().run("--verbose");
+ *     systemErrRule.assertLogMatchesFile(new File("src/test/resources/verbose.txt"));
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>Call {@link #updateGoldenFiles()} when you create the rule if the
+ * expected output has changed. Then the file is overwritten with the log
+ * instead.
+ *
  * <p>If your code under test writes raw binary data to {@code System.err} then
  * you can read it by means of {@link #getLogAsBytes()}).
  *
@@ -106,6 +155,44 @@ import org.junit.runners.model.Statement;
  * }
  * </pre>
  *
+ * <h2>Fail Fast</h2>
+ *
+ * <p>Some assertions can be checked while the code under test is still
+ * running. {@link #failOnLineMatching(String)} lets the test fail as soon as
+ * a line is written that matches a regular expression. The line is checked
+ * when it is written and the code that writes it gets an
+ * {@code AssertionError}. The log does not have to be enabled for this.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .failOnLineMatching("ERROR");
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     runLongProcess(); //is aborted by the first line with ERROR
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>{@link #expectWithin(int, String)} lets the test fail as soon as a number
+ * of lines have been written without a line that matches a regular
+ * expression.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .expectWithin(3, "started");
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     startServer();
+ *   }
+ * }
+ * </pre>
+ *
  * <h2>Muting</h2>
  *
  * <p>Usually the output of a test to {@code System.err} does not have to be
@@ -166,6 +253,22 @@ import org.junit.runners.model.Statement;
  * }
  * </pre>
  *
+ * <p>The output of each test is kept until the test finishes. If your tests
+ * write a lot of text then you can save memory by compressing it.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .muteForSuccessfulTests()
+ *     .compressFailureLog();
+ * }
+ * </pre>
+ *
+ * <p>If the output has to be visible but the console is slow (e.g. the
+ * console of a CI server) then {@link #writeOutputInBackground()} lets the
+ * test continue while its output is written to {@code System.err}.
+ *
  * <h2>Combine Logging and Muting</h2>
  *
  * <p>Logging and muting can be combined. No output is actually written to
@@ -184,6 +287,183 @@ import org.junit.runners.model.Statement;
  *   }
  * }
  * </pre>
+ *
+ * <h2>Long Running Tests</h2>
+ *
+ * <p>The log grows with every byte that is written to {@code System.err}.
+ * Tests that write a lot of text may run out of memory. You can limit the log
+ * to the last bytes by {@link #keepLast(int)}. Older bytes are dropped.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .enableLog()
+ *     .keepLast(64 * 1024 * 1024);
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     runChattyServiceForTenMinutes();
+ *     assertTrue(systemErrRule.getLog().endsWith("service stopped"));
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>If you need the whole output of such tests then you can store the log
+ * in a temporary file as soon as it exceeds a threshold by
+ * {@link #spillToDiskAbove(long)}. The methods for reading the log work the
+ * same way no matter where the log is stored.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .enableLog()
+ *     .spillToDiskAbove(64 * 1024 * 1024);
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     runChattyServiceForTenMinutes();
+ *     assertTrue(systemErrRule.getLog().startsWith("service started"));
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>{@link #storeLogOffHeap()} keeps a large log in memory but outside of the
+ * Java heap. Such a log does not slow down the garbage collector.
+ * {@link #captureChars()} stores the log as text and avoids encoding and
+ * decoding the text that is printed by the test.
+ *
+ * <h2>Parallel Tests</h2>
+ *
+ * <p>By default {@code SystemErrRule} replaces {@code System.err} for the
+ * whole JVM. Therefore it cannot be used for tests that are executed in
+ * parallel. Tests that are executed in parallel have to call
+ * {@link #separateOutputOfParallelTests()}. In this case the rule captures only
+ * the output of the thread that executes the test and of the threads that
+ * are started by it.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .enableLog()
+ *     .separateOutputOfParallelTests();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     System.err.print("some text");
+ *     assertEquals("some text", systemErrRule.getLog());
+ *   }
+ * }
+ * </pre>
+ *
+ * <h2>Consume the Output</h2>
+ *
+ * <p>You don't need the log if you only want to react to each line, e.g. for
+ * counting lines in a load test. {@link #forEachLine(LineConsumer)} passes
+ * every line to a consumer without storing it.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   private final AtomicInteger numberOfRequests = new AtomicInteger();
+ *
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .mute()
+ *     .forEachLine(new LineConsumer() {
+ *       public void accept(String line) {
+ *         if (line.startsWith("request"))
+ *           numberOfRequests.incrementAndGet();
+ *       }
+ *     });
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     runLoadTest();
+ *     assertEquals(10000, numberOfRequests.get());
+ *   }
+ * }
+ * </pre>
+ *
+ * <h2>Timing of Lines</h2>
+ *
+ * <p>{@link #recordLineEvents()} records when each line has been written
+ * and which thread has written it. This allows assertions about latency and
+ * throughput.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .recordLineEvents();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     startService();
+ *     LineEvents events = systemErrRule.getLineEvents();
+ *     int index = events.indexOfFirstLineMatching("service started");
+ *     assertTrue(events.getNanosSinceStart(index) &lt; MILLISECONDS.toNanos(200));
+ *   }
+ * }
+ * </pre>
+ *
+ * <h2>Find Chatty Code</h2>
+ *
+ * <p>{@link #profileCallSites(int)} tells you which code writes most to
+ * {@code System.err}. The top call sites are reported at the end of the
+ * test.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .mute()
+ *     .profileCallSites(100);
+ * }
+ * </pre>
+ *
+ * <p>{@link #recordStats()} counts the calls that are made to
+ * {@code System.err}. This reveals code that writes byte by byte or flushes too
+ * often.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .mute()
+ *     .recordStats();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     exportReport();
+ *     assertEquals(0, systemErrRule.getStats().getNumberOfSingleByteWrites());
+ *   }
+ * }
+ * </pre>
+ *
+ * <h2>Multithreaded Code</h2>
+ *
+ * <p>Threads that write to {@code System.err} block each other while the
+ * rule captures the output. Call {@link #captureWithoutContention()} if
+ * your code under test writes from many threads at the same time and this
+ * would distort the test.
+ *
+ * <pre>
+ * public class SystemErrTest {
+ *   &#064;Rule
+ *   public final SystemErrRule systemErrRule = new SystemErrRule()
+ *     .enableLog()
+ *     .mute()
+ *     .captureWithoutContention();
+ *
+ *   &#064;Test
+ *   public void test() {
+ *     runServiceWithManyThreads();
+ *     assertTrue(systemErrRule.getLog().contains("all threads finished"));
+ *   }
+ * }
+ * </pre>
  */
 public class SystemErrRule implements TestRule {
 	private LogPrintStream logPrintStream = new LogPrintStream(SYSTEM_ERR);
@@ -209,6 +489,64 @@ public class SystemErrRule implements TestRule {
 		return this;
 	}
 
+	/**
+	 * Writes the output to {@code System.err} by a background thread. The test
+	 * does not wait for {@code System.err} unless it writes faster than the
+	 * console can print it for a long time. Flushing is done in the
+	 * background, too, but the output that has been written before a flush
+	 * is written to {@code System.err} before the output that is written after it.
+	 * All output is written to {@code System.err} before the rule finishes.
+	 * Up to 1 MB of output waits for the background thread. Output that is
+	 * written by other threads after the rule has finished is written to
+	 * {@code System.err} directly.
+	 *
+	 * <p>This method has no effect if the rule is muted.
+	 *
+	 * @return the rule itself.
+	 */
+	public SystemErrRule writeOutputInBackground() {
+		logPrintStream.writeOriginalStreamInBackground();
+		return this;
+	}
+
+	/**
+	 * Writes the output that is kept by {@link #muteForSuccessfulTests()}
+	 * to a file instead of {@code System.err} if the test fails. Only a
+	 * short note with the name of the file is written to
+	 * {@code System.err}. The output is written without copying it to the
+	 * heap. This is useful for archiving the output of failing tests, e.g.
+	 * as artifacts of a CI server.
+	 *
+	 * @param file the file that receives the output. It is overwritten.
+	 * @return the rule itself.
+	 */
+	public SystemErrRule writeFailureLogTo(File file) {
+		logPrintStream.writeFailureLogTo(file);
+		return this;
+	}
+
+	/**
+	 * Compresses the output that is kept by {@link #muteForSuccessfulTests()}
+	 * while it is written. It is decompressed and written to
+	 * {@code System.err} only if the test fails. This saves memory for
+	 * tests that write a lot of text.
+	 *
+	 * <p>It can be combined with {@link #captureChars()}, but not with the
+	 * other methods that choose how the log is stored ({@link #keepLast(int)},
+	 * {@link #spillToDiskAbove(long)}, {@link #storeLogOffHeap()} and
+	 * {@link #captureWithoutContention()}), because they choose how the output
+	 * of {@link #muteForSuccessfulTests()} is stored, too.
+	 *
+	 * @return the rule itself.
+	 * @throws IllegalStateException if {@link #keepLast(int)},
+	 * {@link #spillToDiskAbove(long)}, {@link #storeLogOffHeap()} or
+	 * {@link #captureWithoutContention()} has been called.
+	 */
+	public SystemErrRule compressFailureLog() {
+		logPrintStream.compressFailureLog();
+		return this;
+	}
+
 	/**
 	 * Clears the current log.
 	 */
@@ -218,10 +556,10 @@ public class SystemErrRule implements TestRule {
 
 	/**
 	 * Returns the text that is written to {@code System.err} since
-	 * {@link #enableLog()} (respectively {@link #clearLog()} has been called.
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
 	 *
 	 * @return the text that is written to {@code System.err} since
-	 * {@link #enableLog} (respectively {@link #clearLog()} has been called.
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
 	 */
 	public String getLog() {
 		return logPrintStream.getLog();
@@ -229,7 +567,36 @@ public class SystemErrRule implements TestRule {
 
 	/**
 	 * Returns the text that is written to {@code System.err} since
-	 * {@link #enableLog()} (respectively {@link #clearLog()} has been called.
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called
+	 * as a {@code CharSequence}. In contrast to {@link #getLog()} the text
+	 * is not copied to a new {@code String}. The sequence is a live view of
+	 * the log. Text that is written later is part of the sequence, too.
+	 * Therefore you can search large logs by regular expressions without
+	 * copying them.
+	 *
+	 * <pre>
+	 * assertTrue(Pattern.compile("took \\d+ ms")
+	 *   .matcher(systemErrRule.getLogAsCharSequence())
+	 *   .find());
+	 * </pre>
+	 *
+	 * <p>The chars are read without locking the log. Only
+	 * {@link CharSequence#length()} may decode the bytes that have been
+	 * written since its last call. After {@link #clearLog()} the sequence
+	 * shows the new log. A log that is limited by {@link #keepLast(int)}
+	 * drops its oldest text and is therefore provided as a {@code String},
+	 * i.e. as a snapshot that is not updated by subsequent text.
+	 *
+	 * @return the text that is written to {@code System.err} since
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
+	 */
+	public CharSequence getLogAsCharSequence() {
+		return logPrintStream.getLogAsCharSequence();
+	}
+
+	/**
+	 * Returns the text that is written to {@code System.err} since
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
 	 * New line characters are replaced with a single {@code \n}.
 	 *
 	 * @return the normalized log.
@@ -238,17 +605,143 @@ public class SystemErrRule implements TestRule {
 		return logPrintStream.getLogWithNormalizedLineSeparator();
 	}
 
+	/**
+	 * Returns the number of lines that are written to
+	 * {@code System.err} since {@link #enableLog()} (respectively
+	 * {@link #clearLog()}) has been called. A line is terminated by
+	 * {@code \n}. The text after the last {@code \n} is a line, too, unless
+	 * it is empty.
+	 *
+	 * @return the number of lines of the log.
+	 */
+	public int getLineCount() {
+		return logPrintStream.getLineCount();
+	}
+
+	/**
+	 * Returns a single line of the log. The line is read from the log without
+	 * creating the whole log as a {@code String}. The line does not contain
+	 * the line separator ({@code \n} or {@code \r\n}).
+	 *
+	 * @param index the index of the line. The first line has index 0.
+	 * @return the line with the specified index.
+	 * @throws IndexOutOfBoundsException if the log has no line with the
+	 * specified index.
+	 */
+	public String getLine(int index) {
+		return logPrintStream.getLine(index);
+	}
+
+	/**
+	 * Returns a range of lines of the log. The lines are read from the log
+	 * without creating the whole log as a {@code String}. They don't contain
+	 * the line separator ({@code \n} or {@code \r\n}).
+	 *
+	 * @param from the index of the first line (inclusive).
+	 * @param to the index after the last line (exclusive).
+	 * @return the lines from {@code from} to {@code to}.
+	 * @throws IndexOutOfBoundsException if the log does not have all of the
+	 * requested lines.
+	 */
+	public List<String> getLines(int from, int to) {
+		return logPrintStream.getLines(from, to);
+	}
+
+	/**
+	 * Returns the lines of the log. Each line is read from the log when the
+	 * iteration reaches it. The lines don't contain the line separator
+	 * ({@code \n} or {@code \r\n}). Lines that are written after this
+	 * method has been called are not part of the iteration.
+	 *
+	 * @return the lines of the log.
+	 */
+	public Iterable<String> lines() {
+		return logPrintStream.lines();
+	}
+
 	/**
 	 * Returns the raw bytes that are written to {@code System.err} since
-	 * {@link #enableLog()} (respectively {@link #clearLog()} has been called.
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
 	 *
 	 * @return the raw bytes that are written to {@code System.err} since
-	 * {@link #enableLog()} (respectively {@link #clearLog()} has been called.
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called.
 	 */
 	public byte[] getLogAsBytes() {
 		return logPrintStream.getLogAsBytes();
 	}
 
+	/**
+	 * Returns the number of bytes that have been written to
+	 * {@code System.err} since {@link #enableLog()} (respectively
+	 * {@link #clearLog()}) has been called but are no longer part of the log
+	 * because of {@link #keepLast(int)}.
+	 *
+	 * @return the number of bytes that have been dropped from the log.
+	 */
+	public long getNumberOfDroppedBytes() {
+		return logPrintStream.getNumberOfDroppedBytes();
+	}
+
+	/**
+	 * Writes the raw bytes that are written to {@code System.err} since
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called
+	 * to the channel. The log is not copied to the heap. The stored segments
+	 * are written with a single gathering write if the channel supports it.
+	 * A log that is stored in a file by {@link #spillToDiskAbove(long)} is
+	 * transferred directly from the file.
+	 *
+	 * @param channel the channel that receives the log. It is not closed.
+	 * @throws IOException if the channel throws it.
+	 */
+	public void writeLogTo(WritableByteChannel channel) throws IOException {
+		logPrintStream.writeLogTo(channel);
+	}
+
+	/**
+	 * Writes the raw bytes that are written to {@code System.err} since
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called
+	 * to the file.
+	 *
+	 * @param file the file that receives the log. It is overwritten.
+	 * @throws IOException if the file cannot be written.
+	 * @see #writeLogTo(WritableByteChannel)
+	 */
+	public void writeLogTo(File file) throws IOException {
+		logPrintStream.writeLogTo(file);
+	}
+
+	/**
+	 * Checks that the raw bytes that are written to {@code System.err} since
+	 * {@link #enableLog()} (respectively {@link #clearLog()}) has been called
+	 * are the same as the bytes of the file. The file is mapped to memory
+	 * and compared with the log chunk by chunk. The comparison stops at the
+	 * first difference. The {@code AssertionError} shows the number of the
+	 * line with the difference and this line of the log and the file.
+	 *
+	 * <p>If {@link #updateGoldenFiles()} has been called then the file is
+	 * overwritten with the log instead.
+	 *
+	 * @param file the file with the expected output.
+	 * @throws AssertionError if the log and the file differ.
+	 * @throws IOException if the file cannot be read or written.
+	 */
+	public void assertLogMatchesFile(File file) throws IOException {
+		logPrintStream.assertLogMatchesFile(file);
+	}
+
+	/**
+	 * Returns a stream that reads the raw bytes that are written to
+	 * {@code System.err} since {@link #enableLog()} (respectively
+	 * {@link #clearLog()}) has been called. The stream reads the log without
+	 * copying it. Bytes that are written after the stream has been created
+	 * are not provided by the stream.
+	 *
+	 * @return a stream that reads the log.
+	 */
+	public InputStream getLogAsInputStream() {
+		return logPrintStream.getLogAsInputStream();
+	}
+
 	/**
 	 * Start logging of everything that is written to {@code System.err}.
 	 *
@@ -259,6 +752,371 @@ public class SystemErrRule implements TestRule {
 		return this;
 	}
 
+	/**
+	 * Lets {@link #assertLogMatchesFile(File)} write the log to the file
+	 * instead of comparing it. The log is written without copying it to the
+	 * heap. Use this method temporarily when the expected output has
+	 * changed and check the changes of the files before you commit them.
+	 *
+	 * @return the rule itself.
+	 */
+	public SystemErrRule updateGoldenFiles() {
+		logPrintStream.updateGoldenFiles();
+		return this;
+	}
+
+	/**
+	 * Lets the test fail as soon as a line that contains a match for the
+	 * specified regular expression is written to {@code System.err}.
+	 * The code that writes the line gets an {@code AssertionError}. The test
+	 * fails even if this code catches the error or if the line is written by
+	 * another thread. Lines that have been written before this method is
+	 * called are not checked.
+	 *
+	 * @param regex the regular expression.
+	 * @return the rule itself.
+	 * @throws java.util.regex.PatternSyntaxException if the regular
+	 * expression's syntax is invalid.
+	 */
+	public SystemErrRule failOnLineMatching(String regex) {
+		logPrintStream.failOnLineMatching(regex);
+		return this;
+	}
+
+	/**
+	 * Lets the test fail if none of the next lines that are written to
+	 * {@code System.err} contains a match for the specified regular
+	 * expression. The test fails as soon as the last of these lines is
+	 * written. The code that writes this line gets an {@code AssertionError}.
+	 * The test fails at the end, too, if it writes fewer lines and none of
+	 * them contains a match.
+	 *
+	 * @param numberOfLines the number of lines that are checked.
+	 * @param regex the regular expression.
+	 * @return the rule itself.
+	 * @throws IllegalArgumentException if {@code numberOfLines} is not
+	 * positive.
+	 * @throws java.util.regex.PatternSyntaxException if the regular
+	 * expression's syntax is invalid.
+	 */
+	public SystemErrRule expectWithin(int numberOfLines, String regex) {
+		logPrintStream.expectWithin(numberOfLines, regex);
+		return this;
+	}
+
+	/**
+	 * Keeps only the last bytes that have been written to
+	 * {@code System.err} in the log. Older bytes are dropped. The log
+	 * never uses more memory than the specified number of bytes no matter how
+	 * long the test runs. {@link #getNumberOfDroppedBytes()} tells you how
+	 * many bytes have been dropped. The log of
+	 * {@link #muteForSuccessfulTests()} is limited, too.
+	 *
+	 * <p>The current log is discarded when you call this method. It cannot be
+	 * combined with {@link #spillToDiskAbove(long)},
+	 * {@link #storeLogOffHeap()}, {@link #captureChars()} or
+	 * {@link #captureWithoutContention()}, because each of them chooses how the
+	 * log is stored. It cannot be combined with {@link #compressFailureLog()}
+	 * either, because it chooses how the log of
+	 * {@link #muteForSuccessfulTests()} is stored, too.
+	 *
+	 * @param numberOfBytes the maximum number of bytes that are kept.
+	 * @return the rule itself.
+	 * @throws IllegalArgumentException if {@code numberOfBytes} is not
+	 * positive.
+	 * @throws IllegalStateException if {@link #spillToDiskAbove(long)},
+	 * {@link #storeLogOffHeap()}, {@link #captureChars()},
+	 * {@link #captureWithoutContention()} or {@link #compressFailureLog()} has
+	 * been called.
+	 */
+	public SystemErrRule keepLast(int numberOfBytes) {
+		logPrintStream.keepLast(numberOfBytes);
+		return this;
+	}
+
+	/**
+	 * Moves the log to a temporary file as soon as it exceeds the specified
+	 * number of bytes. The file is memory-mapped, therefore the log can be
+	 * read as fast as a log that is stored on the heap. The file is kept
+	 * after the test, therefore other rules (e.g. a {@code TestWatcher}
+	 * around this rule) can still read the log like a log that is stored on
+	 * the heap. It is deleted in the background after the garbage collector
+	 * has found out that the rule is not referenced anymore (or when the JVM
+	 * exits). The log
+	 * of {@link #muteForSuccessfulTests()} is moved to a file, too.
+	 *
+	 * <p>The current log is discarded when you call this method. It cannot be
+	 * combined with {@link #keepLast(int)}, {@link #storeLogOffHeap()},
+	 * {@link #captureChars()} or {@link #captureWithoutContention()}, because
+	 * each of them chooses how the log is stored. It cannot be combined with
+	 * {@link #compressFailureLog()} either, because it chooses how the log of
+	 * {@link #muteForSuccessfulTests()} is stored, too.
+	 *
+	 * @param numberOfBytes the maximum number of bytes that are stored on
+	 *                      the heap.
+	 * @return the rule itself.
+	 * @throws IllegalArgumentException if {@code numberOfBytes} is
+	 * negative.
+	 * @throws IllegalStateException if {@link #keepLast(int)},
+	 * {@link #storeLogOffHeap()}, {@link #captureChars()},
+	 * {@link #captureWithoutContention()} or {@link #compressFailureLog()} has
+	 * been called.
+	 */
+	public SystemErrRule spillToDiskAbove(long numberOfBytes) {
+		logPrintStream.spillToDiskAbove(numberOfBytes);
+		return this;
+	}
+
+	/**
+	 * Stores the log outside of the Java heap. A large log does not
+	 * increase the garbage collector's work for the rest of the test run.
+	 * The memory is kept after the test, therefore other rules (e.g. a
+	 * {@code TestWatcher} around this rule) can still read the log. It is
+	 * released after the garbage collector has found out that the rule is
+	 * not referenced anymore and reused by subsequent tests unless the log
+	 * has been read. The memory of a log that has been read is freed
+	 * by the garbage collector, because the test may still use views of the
+	 * log (e.g. the stream of {@link #getLogAsInputStream()}). The same
+	 * applies to memory beyond 64 MB that is released at the same time. The
+	 * log of {@link #muteForSuccessfulTests()} is stored outside of the
+	 * heap, too.
+	 *
+	 * <p>The current log is discarded when you call this method. It cannot be
+	 * combined with {@link #keepLast(int)}, {@link #spillToDiskAbove(long)},
+	 * {@link #captureChars()} or {@link #captureWithoutContention()}, because
+	 * each of them chooses how the log is stored. It cannot be combined with
+	 * {@link #compressFailureLog()} either, because it chooses how the log of
+	 * {@link #muteForSuccessfulTests()} is stored, too.
+	 *
+	 * @return the rule itself.
+	 * @throws IllegalStateException if {@link #keepLast(int)},
+	 * {@link #spillToDiskAbove(long)}, {@link #captureChars()},
+	 * {@link #captureWithoutContention()} or {@link #compressFailureLog()} has
+	 * been called.
+	 */
+	public SystemErrRule storeLogOffHeap() {
+		logPrintStream.storeLogOffHeap();
+		return this;
+	}
+
+	/**
+	 * Stores the log as text. Text that is printed to {@code System.err} is
+	 * added to the log without encoding it and {@link #getLog()} returns it
+	 * without decoding it. This saves CPU time for tests that write a lot of
+	 * text. The log is only encoded if you request its bytes, e.g. by
+	 * {@link #getLogAsBytes()}. The text is still encoded if it is written
+	 * to {@code System.err} (i.e. if the rule is not muted) or if the log of
+	 * {@link #muteForSuccessfulTests()} is stored. It is encoded by
+	 * {@code System.err} and decoded by the log while the shared stream of
+	 * {@link SharedSystemOutAndSystemErr} is installed.
+	 *
+	 * <p>The current log is discarded when you call this method. It cannot be
+	 * combined with {@link #keepLast(int)}, {@link #spillToDiskAbove(long)},
+	 * {@link #storeLogOffHeap()} or {@link #captureWithoutContention()},
+	 * because each of them chooses how the log is stored. It can be combined
+	 * with {@link #compressFailureLog()}.
+	 *
+	 * @return the rule itself.
+	 * @throws IllegalStateException if {@link #keepLast(int)},
+	 * {@link #spillToDiskAbove(long)}, {@link #storeLogOffHeap()} or
+	 * {@link #captureWithoutContention()} has been called.
+	 */
+	public SystemErrRule captureChars() {
+		logPrintStream.captureChars();
+		return this;
+	}
+
+	/**
+	 * Captures only the output of the thread that executes the test and of
+	 * the threads that are started by this thread. The output of other
+	 * threads is still written to {@code System.err}. This allows you
+	 * to use the rule for tests that are executed in parallel.
+	 *
+	 * <p>Threads inherit the capturing when they are created. Therefore
+	 * the output of threads that have been created before the test (e.g.
+	 * threads of a thread pool) is not captured.
+	 *
+	 * <p>It cannot be combined with {@link #captureWithoutContention()},
+	 * because the threads lock the stream that separates their output.
+	 *
+	 * @return the rule itself.
+	 * @throws IllegalStateException if {@link #captureWithoutContention()}
+	 * has been called.
+	 */
+	public SystemErrRule separateOutputOfParallelTests() {
+		logPrintStream.separateOutputOfThreads();
+		return this;
+	}
+
+	/**
+	 * Lets threads write to {@code System.err} without blocking each
+	 * other. By default all threads lock {@code System.err} and the log
+	 * while they write to it. With this option each thread appends its
+	 * output to its own buffer. The buffers are merged in the order of the
+	 * writes when the log is read. Each {@code print} or {@code println}
+	 * is a single write, therefore lines of different threads are not
+	 * mixed.
+	 *
+	 * <p>Threads still lock {@code System.err} if the rule does not mute
+	 * it. They lock the shared stream of {@link SharedSystemOutAndSystemErr}
+	 * while it is installed, too. The log is stored in buffers of the
+	 * threads anyway.
+	 *
+	 * <p>The current log is discarded when you call this method. It cannot be
+	 * combined with {@link #keepLast(int)}, {@link #spillToDiskAbove(long)},
+	 * {@link #storeLogOffHeap()} or {@link #captureChars()}, because each of
+	 * them chooses how the log is stored. It cannot be combined with
+	 * {@link #compressFailureLog()} either, because it chooses how the log of
+	 * {@link #muteForSuccessfulTests()} is stored, too. It cannot be combined
+	 * with {@link #separateOutputOfParallelTests()}, because the threads lock
+	 * the stream that separates their output.
+	 *
+	 * @return the rule itself.
+	 * @throws IllegalStateException if {@link #keepLast(int)},
+	 * {@link #spillToDiskAbove(long)}, {@link #storeLogOffHeap()},
+	 * {@link #captureChars()}, {@link #compressFailureLog()} or
+	 * {@link #separateOutputOfParallelTests()} has been called.
+	 */
+	public SystemErrRule captureWithoutContention() {
+		logPrintStream.captureWithoutContention();
+		return this;
+	}
+
+	/**
+	 * Records the time and the thread of every line that is written to
+	 * {@code System.err}. The events are provided by
+	 * {@link #getLineEvents()}. The output of each thread is split into
+	 * lines separately.
+	 *
+	 * @return the rule itself.
+	 */
+	public SystemErrRule recordLineEvents() {
+		logPrintStream.recordLineEvents();
+		return this;
+	}
+
+	/**
+	 * Returns the lines that have been completed so far together with the
+	 * time when they have been completed and the thread that has written
+	 * them. Lines that are written afterwards are not added to the returned
+	 * events.
+	 *
+	 * @return the line events.
+	 * @throws IllegalStateException if {@link #recordLineEvents()} has not
+	 * been called.
+	 */
+	public LineEvents getLineEvents() {
+		return new LineEvents(logPrintStream.getLineEvents());
+	}
+
+	/**
+	 * Passes every line that is written to {@code System.err} to the
+	 * consumer. The consumer is called by the writing thread as soon as the
+	 * thread completes the line. The output of each thread is split into
+	 * lines separately. The rule only stores the incomplete line of each
+	 * thread. If you neither enable the log nor call
+	 * {@link #muteForSuccessfulTests()} then the memory that is used by the
+	 * rule does not grow with the output.
+	 * Different threads may call the consumer concurrently, therefore it
+	 * must be thread-safe.
+	 * A line that has not been completed by its thread when the test is
+	 * finished is passed to the consumer by the test's thread after the
+	 * test.
+	 *
+	 * @param consumer the consumer that receives the lines.
+	 * @return the rule itself.
+	 */
+	public SystemErrRule forEachLine(final LineConsumer consumer) {
+		logPrintStream.addLineObserver(new LineObserver() {
+			public void lineCompleted(String line) {
+				consumer.accept(line);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Passes the bytes of every write to {@code System.err} to the
+	 * consumer. The consumer is called by the writing thread. Nothing is
+	 * stored by the rule for the consumer. Different threads may call
+	 * the consumer concurrently, therefore it must be thread-safe.
+	 *
+	 * @param consumer the consumer that receives the bytes.
+	 * @return the rule itself.
+	 * @see #forEachLine(LineConsumer)
+	 */
+	public SystemErrRule forEachChunk(final ChunkConsumer consumer) {
+		logPrintStream.addObserver(new OutputStream() {
+			@Override
+			public void write(int b) {
+				consumer.accept(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				consumer.accept(b, off, len);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Finds the code that writes most to {@code System.err}. The rule
+	 * determines the call site of every n-th write to {@code System.err}.
+	 * Other writes are only counted, therefore the overhead is low for a
+	 * large sampling interval. The top call sites by bytes and by writes are
+	 * available by {@link #getCallSiteReport()}. They are written to
+	 * {@code System.err} at the end of every test, regardless of whether it
+	 * succeeds or fails.
+	 *
+	 * @param samplingInterval the call site of every n-th write is
+	 *                         determined.
+	 * @return the rule itself.
+	 * @throws IllegalArgumentException if the sampling interval is not
+	 * positive.
+	 */
+	public SystemErrRule profileCallSites(int samplingInterval) {
+		logPrintStream.profileCallSites(samplingInterval);
+		return this;
+	}
+
+	/**
+	 * Returns the top call sites by bytes and by writes. The numbers are
+	 * estimated from the sampled writes.
+	 *
+	 * @return a report of the top call sites.
+	 * @throws IllegalStateException if {@link #profileCallSites(int)} has
+	 * not been called.
+	 */
+	public String getCallSiteReport() {
+		return logPrintStream.getCallSiteReport();
+	}
+
+	/**
+	 * Counts the calls that are made to {@code System.err}: writes of single
+	 * bytes, writes of arrays together with their sizes and explicit
+	 * flushes. The numbers are provided by {@link #getStats()}. They are
+	 * reset when a test starts.
+	 *
+	 * @return the rule itself.
+	 */
+	public SystemErrRule recordStats() {
+		logPrintStream.recordWriteStatistics();
+		return this;
+	}
+
+	/**
+	 * Returns the numbers of the calls that have been made to
+	 * {@code System.err} since the test started.
+	 *
+	 * @return the numbers of the calls.
+	 * @throws IllegalStateException if {@link #recordStats()} has not been
+	 * called.
+	 */
+	public OutputStats getStats() {
+		return new OutputStats(logPrintStream.getWriteStatistics());
+	}
+
 	public Statement apply(Statement base, Description description) {
 		return logPrintStream.createStatement(base);
 	}
@@ -0,0 +1,210 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@code OutputStream} that writes to its target in the background. Each
+ * write copies the bytes to a queue that is drained by a single writer
+ * thread. Therefore the writing thread does not wait for the target unless
+ * the queue is full. The queue is full when it holds 1 MB. A single write
+ * that is larger than that is queued when the queue is empty.
+ *
+ * <p>{@link #flush()} is a barrier. It does not wait, but the writer flushes
+ * the target after it has written all bytes that have been written before
+ * the flush. {@link #finish()} waits until all bytes have been written and
+ * stops the writer. Writes that are started while the stream is finished
+ * are still queued. The writer stops after the queue is empty and all
+ * subsequent writes are written to the target directly. Checking whether
+ * the writer has stopped and queuing the bytes is done while the queue is
+ * locked, therefore no bytes are lost and the order of the bytes is kept.
+ *
+ * <p>The stream stops writing to the target after the target has thrown an
+ * {@code IOException}, like a {@code PrintStream} that has an error.
+ */
+class AsynchronousStream extends OutputStream {
+	private static final int MAX_QUEUED_BYTES = 1024 * 1024;
+	private static final byte[] FLUSH = new byte[0];
+	private static final byte[] CLOSE = new byte[0];
+	private final OutputStream target;
+	private final Lock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	//guarded by lock
+	private final Queue<byte[]> queue = new LinkedList<byte[]>();
+	private int numberOfQueuedBytes = 0;
+	private boolean finishing = false;
+	private boolean writerStopped = false;
+	private final Thread writer;
+
+	AsynchronousStream(OutputStream target, String nameOfWriter) {
+		this.target = target;
+		this.writer = new Thread(new Writer(), nameOfWriter);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (!put(new byte[] { (byte) b }))
+			target.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return;
+		byte[] copy = new byte[len];
+		System.arraycopy(b, off, copy, 0, len);
+		if (!put(copy))
+			target.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (!put(FLUSH))
+			target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!put(CLOSE))
+			target.close();
+	}
+
+	/**
+	 * Waits until all bytes have been written to the target and stops the
+	 * writer. The method does not throw an exception, because it is called
+	 * after the test, which may have failed. If the current thread is
+	 * interrupted, it waits anyway and is interrupted again afterwards.
+	 */
+	void finish() {
+		lock.lock();
+		try {
+			finishing = true;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		boolean interrupted = false;
+		while (writer.isAlive())
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Queues the bytes unless the writer has stopped.
+	 *
+	 * @return whether the bytes have been queued.
+	 */
+	private boolean put(byte[] bytes) throws InterruptedIOException {
+		lock.lock();
+		try {
+			while (!writerStopped && !queue.isEmpty()
+					&& numberOfQueuedBytes + bytes.length > MAX_QUEUED_BYTES)
+				notFull.await();
+			if (writerStopped)
+				return false;
+			queue.add(bytes);
+			numberOfQueuedBytes += bytes.length;
+			notEmpty.signal();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+				"Interrupted while waiting for the writer of the stream.");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next bytes of the queue and waits for them if necessary.
+	 *
+	 * @return the next bytes or {@code null} if the stream has been finished
+	 * and the queue is empty.
+	 */
+	private byte[] take() throws InterruptedException {
+		lock.lock();
+		try {
+			while (queue.isEmpty() && !finishing)
+				notEmpty.await();
+			if (queue.isEmpty()) {
+				//checked by put() while the queue is locked
+				writerStopped = true;
+				notFull.signalAll();
+				return null;
+			}
+			byte[] bytes = queue.remove();
+			numberOfQueuedBytes -= bytes.length;
+			notFull.signalAll();
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Lets subsequent writes write to the target directly if the writer
+	 * stops unexpectedly.
+	 */
+	private void stopWriter() {
+		lock.lock();
+		try {
+			writerStopped = true;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private class Writer implements Runnable {
+		private boolean failed = false;
+		private boolean unflushedBytes = false;
+
+		public void run() {
+			try {
+				byte[] bytes;
+				while ((bytes = take()) != null)
+					if (!failed)
+						write(bytes);
+				if (!failed && unflushedBytes)
+					target.flush();
+			} catch (InterruptedException e) {
+				//the writer is a daemon thread and nobody interrupts it
+			} catch (IOException e) {
+				//the stream is finished
+			} finally {
+				stopWriter();
+			}
+		}
+
+		private void write(byte[] bytes) {
+			try {
+				if (bytes == FLUSH) {
+					if (unflushedBytes)
+						target.flush();
+					unflushedBytes = false;
+				} else if (bytes == CLOSE)
+					target.close();
+				else {
+					target.write(bytes);
+					unflushedBytes = true;
+				}
+			} catch (IOException e) {
+				failed = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.String.format;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the code that writes most to a stream. It determines the call site of
+ * every n-th write. Other writes are only counted. The numbers of the call
+ * sites are estimated by multiplying the sampled numbers with the sampling
+ * interval.
+ */
+class CallSiteProfiler extends OutputStream {
+	private static final int NUMBER_OF_REPORTED_CALL_SITES = 10;
+	private final int samplingInterval;
+	private final Map<String, CallSite> callSites
+		= new HashMap<String, CallSite>();
+	private long numberOfWrites = 0;
+	private long numberOfBytes = 0;
+
+	CallSiteProfiler(int samplingInterval) {
+		if (samplingInterval <= 0)
+			throw new IllegalArgumentException(
+				"The sampling interval must be positive but is "
+					+ samplingInterval + ".");
+		this.samplingInterval = samplingInterval;
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		count(1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		count(len);
+	}
+
+	private void count(int length) {
+		++numberOfWrites;
+		numberOfBytes += length;
+		if (numberOfWrites % samplingInterval == 0)
+			sample(length);
+	}
+
+	private void sample(int length) {
+		String name = CallSites.callSite();
+		CallSite callSite = callSites.get(name);
+		if (callSite == null) {
+			callSite = new CallSite(name);
+			callSites.put(name, callSite);
+		}
+		++callSite.numberOfWrites;
+		callSite.numberOfBytes += length;
+	}
+
+	synchronized void reset() {
+		callSites.clear();
+		numberOfWrites = 0;
+		numberOfBytes = 0;
+	}
+
+	synchronized String getReport(String nameOfStream) {
+		StringBuilder report = new StringBuilder();
+		report.append(format("Call sites of %s: %d writes, %d bytes,"
+				+ " one of %d writes has been sampled%n",
+			nameOfStream, numberOfWrites, numberOfBytes, samplingInterval));
+		List<CallSite> sites = new ArrayList<CallSite>(callSites.values());
+		Collections.sort(sites, new Comparator<CallSite>() {
+			public int compare(CallSite first, CallSite second) {
+				return compareDescending(
+					first.numberOfBytes, second.numberOfBytes);
+			}
+		});
+		appendTopCallSites(report, "Top call sites by bytes", sites);
+		Collections.sort(sites, new Comparator<CallSite>() {
+			public int compare(CallSite first, CallSite second) {
+				return compareDescending(
+					first.numberOfWrites, second.numberOfWrites);
+			}
+		});
+		appendTopCallSites(report, "Top call sites by writes", sites);
+		return report.toString();
+	}
+
+	private void appendTopCallSites(
+			StringBuilder report, String title, List<CallSite> sites) {
+		report.append(format("%s (estimated):%n", title));
+		int numberOfReportedSites = Math.min(
+			sites.size(), NUMBER_OF_REPORTED_CALL_SITES);
+		for (CallSite site: sites.subList(0, numberOfReportedSites))
+			report.append(format("%12d bytes %10d writes  %s%n",
+				samplingInterval * site.numberOfBytes,
+				samplingInterval * site.numberOfWrites,
+				site.name));
+	}
+
+	private static int compareDescending(long first, long second) {
+		return first > second ? -1 : (first == second ? 0 : 1);
+	}
+
+	private static class CallSite {
+		final String name;
+		long numberOfWrites = 0;
+		long numberOfBytes = 0;
+
+		CallSite(String name) {
+			this.name = name;
+		}
+	}
+}
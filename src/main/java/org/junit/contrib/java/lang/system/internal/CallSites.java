@@ -0,0 +1,29 @@
+package org.junit.contrib.java.lang.system.internal;
+
+/**
+ * Finds the code that writes to {@code System.out} or {@code System.err}.
+ */
+class CallSites {
+	private static final String PACKAGE_OF_STREAMS
+		= CallSites.class.getPackage().getName() + ".";
+
+	/**
+	 * Returns the first frame of the current thread's stack that belongs
+	 * neither to the JDK nor to the streams of System Rules.
+	 *
+	 * @return the frame of the method that writes to the stream.
+	 */
+	static String callSite() {
+		for (StackTraceElement element: new Throwable().getStackTrace())
+			if (!isPartOfTheStream(element.getClassName()))
+				return element.toString();
+		return "an unknown method";
+	}
+
+	private static boolean isPartOfTheStream(String className) {
+		return className.startsWith("java.")
+			|| className.startsWith("sun.")
+			|| className.startsWith("jdk.")
+			|| className.startsWith(PACKAGE_OF_STREAMS);
+	}
+}
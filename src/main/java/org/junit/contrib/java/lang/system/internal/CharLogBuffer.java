@@ -0,0 +1,198 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.nio.charset.CodingErrorAction.REPLACE;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.util.List;
+
+/**
+ * A buffer that stores text as chars. Text that is printed is appended
+ * directly without encoding it. Bytes that are written to the buffer are
+ * decoded. The buffer only encodes its text if its bytes are requested, e.g.
+ * by {@link #getSegments()}. The encoded bytes are cached and only new text
+ * is encoded by subsequent requests. The text is encoded directly from the
+ * segments of chars without creating a {@code String}.
+ *
+ * <p>The text that is returned by {@link #getText()} is cached until new
+ * text is appended. Therefore subsequent calls without new output don't copy
+ * the text.
+ *
+ * <p>The chars are stored in {@link CharSegments}. The buffer never copies
+ * existing chars when it grows and the chars can be read without locking the
+ * buffer.
+ *
+ * <p>The buffer is thread-safe.
+ */
+class CharLogBuffer extends LogBuffer {
+	private static final int MAX_BYTES_PER_CHAR = 16;
+	private final Charset charset;
+	private final CharSegments chars = new CharSegments();
+	private String cachedText;
+	private final CharsetDecoder decoder;
+	private final ByteBuffer bytesOfIncompleteChar
+		= ByteBuffer.allocate(MAX_BYTES_PER_CHAR);
+	private final CharBuffer decodedChunk = CharBuffer.allocate(8192);
+	private final CharsetEncoder encoder;
+	private final ByteBuffer encodedChunk = ByteBuffer.allocate(8192);
+	private final SegmentedBuffer encodedBytes = new SegmentedBuffer();
+	private int numberOfEncodedChars = 0;
+
+	CharLogBuffer(Charset charset) {
+		this.charset = charset;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(REPLACE)
+			.onUnmappableCharacter(REPLACE);
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(REPLACE)
+			.onUnmappableCharacter(REPLACE);
+	}
+
+	/**
+	 * Appends text without encoding it.
+	 *
+	 * @param text the text that is appended.
+	 */
+	synchronized void append(String text) {
+		chars.append(text);
+		discardCachedText();
+	}
+
+	private void append(CharBuffer text) {
+		chars.append(text);
+		discardCachedText();
+	}
+
+	private void discardCachedText() {
+		cachedText = null;
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+		while (bytes.hasRemaining()) {
+			if (bytesOfIncompleteChar.position() == 0) {
+				decode(bytes);
+				if (bytes.hasRemaining())
+					bytesOfIncompleteChar.put(bytes);
+			} else {
+				//complete the char byte by byte
+				bytesOfIncompleteChar.put(bytes.get());
+				bytesOfIncompleteChar.flip();
+				decode(bytesOfIncompleteChar);
+				bytesOfIncompleteChar.compact();
+			}
+		}
+	}
+
+	private void decode(ByteBuffer bytes) {
+		while (decoder.decode(bytes, decodedChunk, false).isOverflow())
+			appendDecodedChunk();
+		appendDecodedChunk();
+	}
+
+	private void appendDecodedChunk() {
+		decodedChunk.flip();
+		if (decodedChunk.hasRemaining())
+			append(decodedChunk);
+		decodedChunk.clear();
+	}
+
+	/**
+	 * Returns the text of the buffer. The text is not decoded. The text is
+	 * created once for all calls between two appends of new text.
+	 *
+	 * @return the text of the buffer.
+	 */
+	synchronized String getText() {
+		if (cachedText == null)
+			cachedText = chars.toString();
+		return cachedText;
+	}
+
+	/**
+	 * Returns the chars of the buffer. They are not copied and grow when
+	 * text is appended. They can be read without locking the buffer.
+	 *
+	 * @return the chars of the buffer.
+	 */
+	CharSequence getChars() {
+		return chars;
+	}
+
+	/**
+	 * Returns the number of bytes of the encoded text.
+	 *
+	 * @return the number of bytes of the encoded text.
+	 */
+	@Override
+	synchronized long size() {
+		encodeNewChars();
+		return encodedBytes.size();
+	}
+
+	@Override
+	synchronized void reset() {
+		chars.reset();
+		discardCachedText();
+		decoder.reset();
+		bytesOfIncompleteChar.clear();
+		encoder.reset();
+		encodedBytes.reset();
+		numberOfEncodedChars = 0;
+	}
+
+	@Override
+	synchronized List<ByteBuffer> getSegments() {
+		encodeNewChars();
+		return encodedBytes.getSegments();
+	}
+
+	/**
+	 * Encodes the chars that have been appended since the last call. The
+	 * chars are encoded directly from the segments. A high surrogate at the
+	 * end of the text is not encoded until its pair is complete.
+	 */
+	private void encodeNewChars() {
+		while (numberOfEncodedChars < chars.length()) {
+			CharBuffer segment = chars.charsOfSegmentFrom(numberOfEncodedChars);
+			int numberOfChars = segment.remaining();
+			encode(segment);
+			numberOfEncodedChars += numberOfChars - segment.remaining();
+			if (!segment.hasRemaining())
+				continue;
+			//a surrogate pair that is split across two segments
+			if (numberOfEncodedChars + 1 >= chars.length())
+				return;
+			CharBuffer pair = CharBuffer.wrap(new char[] {
+				segment.get(), chars.charAt(numberOfEncodedChars + 1) });
+			encode(pair);
+			numberOfEncodedChars += 2 - pair.remaining();
+		}
+	}
+
+	private void encode(CharBuffer text) {
+		while (encoder.encode(text, encodedChunk, false).isOverflow())
+			writeEncodedChunk();
+		writeEncodedChunk();
+	}
+
+	private void writeEncodedChunk() {
+		encodedChunk.flip();
+		encodedBytes.write(encodedChunk.array(), 0, encodedChunk.limit());
+		encodedChunk.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "CharLogBuffer[" + charset + ", " + chars.length() + " chars]";
+	}
+}
@@ -0,0 +1,137 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.nio.CharBuffer;
+
+/**
+ * An append-only sequence of chars. The chars are stored in segments of
+ * fixed size. Therefore existing chars are never copied when the sequence
+ * grows and each char is found without searching.
+ *
+ * <p>Appending and resetting have to be synchronized by the owner of the
+ * sequence. The methods of {@code CharSequence} can be called by any thread
+ * without locking. They see all chars that have been appended before
+ * {@link #length()} returned. After a reset they throw an
+ * {@code IndexOutOfBoundsException} for chars that don't exist anymore.
+ */
+class CharSegments implements CharSequence {
+	private static final int SEGMENT_SHIFT = 12;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+	//written before the length, so that readers see all segments of the
+	//chars that they know
+	private volatile char[][] segments = new char[0][];
+	private volatile int length = 0;
+
+	void append(String text) {
+		int numberOfCopiedChars = 0;
+		while (numberOfCopiedChars < text.length()) {
+			int lengthOfChunk = Math.min(text.length() - numberOfCopiedChars,
+				remainingCapacityOfCurrentSegment());
+			text.getChars(numberOfCopiedChars,
+				numberOfCopiedChars + lengthOfChunk,
+				currentSegment(), length & SEGMENT_MASK);
+			numberOfCopiedChars += lengthOfChunk;
+			length += lengthOfChunk;
+		}
+	}
+
+	void append(CharBuffer chars) {
+		while (chars.hasRemaining()) {
+			int lengthOfChunk = Math.min(chars.remaining(),
+				remainingCapacityOfCurrentSegment());
+			chars.get(currentSegment(), length & SEGMENT_MASK, lengthOfChunk);
+			length += lengthOfChunk;
+		}
+	}
+
+	private int remainingCapacityOfCurrentSegment() {
+		return SEGMENT_SIZE - (length & SEGMENT_MASK);
+	}
+
+	private char[] currentSegment() {
+		int index = length >>> SEGMENT_SHIFT;
+		char[][] segments = this.segments;
+		if (index == segments.length) {
+			char[][] newSegments = new char[Math.max(8, 2 * index)][];
+			System.arraycopy(segments, 0, newSegments, 0, index);
+			segments = newSegments;
+		}
+		if (segments[index] == null) {
+			segments[index] = new char[SEGMENT_SIZE];
+			this.segments = segments;
+		}
+		return segments[index];
+	}
+
+	/**
+	 * Discards all chars.
+	 */
+	void reset() {
+		segments = new char[0][];
+		length = 0;
+	}
+
+	/**
+	 * Returns the chars of the segment that contains the specified char,
+	 * starting with that char. The returned buffer is backed by the
+	 * segment.
+	 *
+	 * @param index the index of the first char.
+	 * @return the chars from {@code index} to the end of its segment.
+	 */
+	CharBuffer charsOfSegmentFrom(int index) {
+		int length = this.length;
+		checkIndex(index, length);
+		int offset = index & SEGMENT_MASK;
+		int end = Math.min(SEGMENT_SIZE, length - index + offset);
+		return CharBuffer.wrap(
+			segments[index >>> SEGMENT_SHIFT], offset, end - offset);
+	}
+
+	/**
+	 * Appends the chars between {@code start} and {@code end} to the
+	 * specified {@code StringBuilder}.
+	 */
+	void appendTo(StringBuilder builder, int start, int end) {
+		int length = this.length;
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("The chars " + start
+				+ " to " + end + " don't exist. The length is " + length + ".");
+		char[][] segments = this.segments;
+		for (int i = start; i < end; ) {
+			int offset = i & SEGMENT_MASK;
+			int lengthOfChunk = Math.min(SEGMENT_SIZE - offset, end - i);
+			builder.append(segments[i >>> SEGMENT_SHIFT], offset, lengthOfChunk);
+			i += lengthOfChunk;
+		}
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		checkIndex(index, length);
+		return segments[index >>> SEGMENT_SHIFT][index & SEGMENT_MASK];
+	}
+
+	private static void checkIndex(int index, int length) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("The char " + index
+				+ " doesn't exist. The length is " + length + ".");
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+		appendTo(builder, start, end);
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		int length = this.length;
+		StringBuilder builder = new StringBuilder(length);
+		appendTo(builder, 0, length);
+		return builder.toString();
+	}
+}
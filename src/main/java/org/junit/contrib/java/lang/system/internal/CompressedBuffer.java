@@ -0,0 +1,188 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A buffer that stores the bytes compressed. The bytes are collected in a
+ * block. A full block is compressed with a {@link Deflater} and only the
+ * compressed bytes are kept. Reading the buffer decompresses the blocks one
+ * by one.
+ *
+ * <p>The buffer is thread-safe.
+ */
+class CompressedBuffer extends LogBuffer {
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private final List<byte[]> compressedBlocks = new ArrayList<byte[]>();
+	private final byte[] chunk = new byte[8192];
+	private byte[] currentBlock;
+	private int lengthOfCurrentBlock = 0;
+	private Deflater deflater;
+	private long size = 0;
+
+	@Override
+	public synchronized void write(int b) {
+		ensureCurrentBlockHasRemainingCapacity();
+		currentBlock[lengthOfCurrentBlock++] = (byte) b;
+		++size;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		int remaining = len;
+		while (remaining > 0) {
+			ensureCurrentBlockHasRemainingCapacity();
+			int lengthOfChunk = Math.min(
+				remaining, BLOCK_SIZE - lengthOfCurrentBlock);
+			System.arraycopy(b, off + len - remaining, currentBlock,
+				lengthOfCurrentBlock, lengthOfChunk);
+			lengthOfCurrentBlock += lengthOfChunk;
+			remaining -= lengthOfChunk;
+		}
+		size += len;
+	}
+
+	private void ensureCurrentBlockHasRemainingCapacity() {
+		if (currentBlock == null)
+			currentBlock = new byte[BLOCK_SIZE];
+		else if (lengthOfCurrentBlock == BLOCK_SIZE) {
+			compressedBlocks.add(compress(currentBlock));
+			lengthOfCurrentBlock = 0;
+		}
+	}
+
+	private byte[] compress(byte[] block) {
+		if (deflater == null)
+			deflater = new Deflater();
+		deflater.reset();
+		deflater.setInput(block, 0, BLOCK_SIZE);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		while (!deflater.finished()) {
+			int length = deflater.deflate(chunk);
+			compressed.write(chunk, 0, length);
+		}
+		return compressed.toByteArray();
+	}
+
+	@Override
+	synchronized long size() {
+		return size;
+	}
+
+	@Override
+	synchronized void reset() {
+		compressedBlocks.clear();
+		currentBlock = null;
+		lengthOfCurrentBlock = 0;
+		size = 0;
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+	}
+
+	@Override
+	synchronized void release() {
+		//the deflater holds native memory
+		reset();
+	}
+
+	/**
+	 * Returns the decompressed bytes. All blocks are decompressed. Use
+	 * {@link #writeTo(OutputStream)} if you don't need the bytes on the heap.
+	 *
+	 * @return the decompressed bytes.
+	 */
+	@Override
+	synchronized List<ByteBuffer> getSegments() {
+		List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+		Inflater inflater = new Inflater();
+		try {
+			for (byte[] compressedBlock: compressedBlocks)
+				segments.add(ByteBuffer.wrap(
+					decompress(compressedBlock, inflater)).asReadOnlyBuffer());
+		} finally {
+			inflater.end();
+		}
+		if (lengthOfCurrentBlock > 0) {
+			byte[] copy = new byte[lengthOfCurrentBlock];
+			System.arraycopy(currentBlock, 0, copy, 0, lengthOfCurrentBlock);
+			segments.add(ByteBuffer.wrap(copy).asReadOnlyBuffer());
+		}
+		return segments;
+	}
+
+	/**
+	 * Decompresses the blocks one by one and writes them to the stream.
+	 * Only a single decompressed block is stored on the heap at a time.
+	 *
+	 * @param stream the stream that receives the decompressed bytes.
+	 * @throws IOException if the stream throws it.
+	 */
+	@Override
+	synchronized void writeTo(OutputStream stream) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			for (byte[] compressedBlock: compressedBlocks)
+				stream.write(decompress(compressedBlock, inflater));
+		} finally {
+			inflater.end();
+		}
+		if (lengthOfCurrentBlock > 0)
+			stream.write(currentBlock, 0, lengthOfCurrentBlock);
+	}
+
+	/**
+	 * Decompresses the blocks one by one and writes them to the channel.
+	 * Only a single decompressed block is stored on the heap at a time.
+	 *
+	 * @param channel the channel that receives the decompressed bytes.
+	 * @throws IOException if the channel throws it.
+	 */
+	@Override
+	synchronized void writeTo(WritableByteChannel channel)
+			throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			for (byte[] compressedBlock: compressedBlocks)
+				writeAll(channel, ByteBuffer.wrap(
+					decompress(compressedBlock, inflater)));
+		} finally {
+			inflater.end();
+		}
+		if (lengthOfCurrentBlock > 0)
+			writeAll(channel,
+				ByteBuffer.wrap(currentBlock, 0, lengthOfCurrentBlock));
+	}
+
+	private static void writeAll(WritableByteChannel channel, ByteBuffer bytes)
+			throws IOException {
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+	}
+
+	private static byte[] decompress(byte[] compressedBlock, Inflater inflater) {
+		inflater.reset();
+		inflater.setInput(compressedBlock);
+		byte[] block = new byte[BLOCK_SIZE];
+		try {
+			int length = 0;
+			while (length < BLOCK_SIZE && !inflater.finished())
+				length += inflater.inflate(block, length, BLOCK_SIZE - length);
+			return block;
+		} catch (DataFormatException e) {
+			throw new IllegalStateException(
+				"Cannot decompress a block that has been compressed before.",
+				e);
+		}
+	}
+}
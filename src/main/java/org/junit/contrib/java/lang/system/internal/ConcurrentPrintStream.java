@@ -0,0 +1,196 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.System.getProperty;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * A {@code PrintStream} that does not lock. Each call is encoded to a byte
+ * array by the calling thread and written to the underlying stream with a
+ * single write. Therefore the underlying stream has to be thread-safe. A
+ * {@code println} writes the text and the line separator at once, hence lines
+ * of different threads are not mixed by streams that write arrays atomically.
+ */
+class ConcurrentPrintStream extends PrintStream {
+	private final boolean autoFlush;
+	private final String encoding;
+	private final String lineSeparator = getProperty("line.separator");
+
+	ConcurrentPrintStream(OutputStream out, boolean autoFlush, String encoding)
+			throws UnsupportedEncodingException {
+		super(out, autoFlush, encoding);
+		this.autoFlush = autoFlush;
+		this.encoding = encoding;
+	}
+
+	@Override
+	public void write(int b) {
+		try {
+			out.write(b);
+			if (b == '\n' && autoFlush)
+				out.flush();
+		} catch (InterruptedIOException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			setError();
+		}
+	}
+
+	@Override
+	public void write(byte[] buf, int off, int len) {
+		try {
+			out.write(buf, off, len);
+			if (autoFlush)
+				out.flush();
+		} catch (InterruptedIOException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			setError();
+		}
+	}
+
+	@Override
+	public void flush() {
+		boolean explicitFlushInProgressBefore = ExplicitFlush.begin();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			setError();
+		} finally {
+			ExplicitFlush.end(explicitFlushInProgressBefore);
+		}
+	}
+
+	@Override
+	public void print(boolean b) {
+		write(String.valueOf(b));
+	}
+
+	@Override
+	public void print(char c) {
+		write(String.valueOf(c));
+	}
+
+	@Override
+	public void print(int i) {
+		write(String.valueOf(i));
+	}
+
+	@Override
+	public void print(long l) {
+		write(String.valueOf(l));
+	}
+
+	@Override
+	public void print(float f) {
+		write(String.valueOf(f));
+	}
+
+	@Override
+	public void print(double d) {
+		write(String.valueOf(d));
+	}
+
+	@Override
+	public void print(char[] s) {
+		write(new String(s));
+	}
+
+	@Override
+	public void print(String s) {
+		write(String.valueOf(s));
+	}
+
+	@Override
+	public void print(Object obj) {
+		write(String.valueOf(obj));
+	}
+
+	@Override
+	public void println() {
+		write(lineSeparator);
+	}
+
+	@Override
+	public void println(boolean x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(char x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(int x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(long x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(float x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(double x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(char[] x) {
+		write(new String(x) + lineSeparator);
+	}
+
+	@Override
+	public void println(String x) {
+		write(x + lineSeparator);
+	}
+
+	@Override
+	public void println(Object x) {
+		write(String.valueOf(x) + lineSeparator);
+	}
+
+	@Override
+	public PrintStream format(String format, Object... args) {
+		write(new Formatter().format(format, args).toString());
+		return this;
+	}
+
+	@Override
+	public PrintStream format(Locale l, String format, Object... args) {
+		write(new Formatter(l).format(format, args).toString());
+		return this;
+	}
+
+	/**
+	 * Writes the text. All {@code print}, {@code println} and
+	 * {@code format} methods end here.
+	 *
+	 * @param s the text.
+	 */
+	void write(String s) {
+		byte[] bytes = encode(s);
+		write(bytes, 0, bytes.length);
+	}
+
+	byte[] encode(String s) {
+		try {
+			return s.getBytes(encoding);
+		} catch (UnsupportedEncodingException e) {
+			//the encoding has been checked by the constructor
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.max;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link SegmentedBuffer} that stores the bytes outside of the Java heap.
+ * The segments are direct {@code ByteBuffer}s. Their memory cannot be freed
+ * explicitly. Therefore {@link #reset()} and {@link #release()} return them to
+ * a pool that is shared by all buffers. The segments of a buffer that is not
+ * referenced anymore are returned to the pool, too. The next buffer takes
+ * them from the pool instead of allocating new ones.
+ *
+ * <p>Only segments that have never been read are returned to the pool. Views
+ * of the segments (e.g. of {@link #getSegments()} or a stream of
+ * {@link #newInputStream()}) may still be used after the buffer has been
+ * reset and must not see the bytes of another buffer. Therefore the segments
+ * of a buffer that has been read are left to the garbage collector. The same
+ * applies to segments that don't fit into the pool anymore, because the pool
+ * keeps 64 MB at most. The garbage collector frees the memory of these
+ * segments when it collects them.
+ */
+class DirectBuffer extends SegmentedBuffer {
+	private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+	private static final SegmentPool POOL
+		= new SegmentPool(64 * 1024 * 1024);
+	private final AllocatedSegments allocatedSegments = new AllocatedSegments();
+
+	DirectBuffer() {
+		//the log is not reset after the test, because other rules may read it
+		ResourceReleaser.releaseWhenUnreachable(this, allocatedSegments);
+	}
+
+	@Override
+	int capacityOfNextSegment(ByteBuffer previousSegment) {
+		return max(MIN_SEGMENT_SIZE, super.capacityOfNextSegment(previousSegment));
+	}
+
+	@Override
+	ByteBuffer allocateSegment(int capacity) {
+		ByteBuffer segment = POOL.take(capacity);
+		allocatedSegments.add(segment);
+		return segment;
+	}
+
+	@Override
+	List<ByteBuffer> getSegments() {
+		allocatedSegments.exposed = true;
+		return super.getSegments();
+	}
+
+	@Override
+	synchronized void reset() {
+		super.reset();
+		//A reader that has not set exposed yet reads the segments after they
+		//have been removed by super.reset().
+		allocatedSegments.giveBackUnlessExposed();
+	}
+
+	@Override
+	synchronized void release() {
+		reset();
+	}
+
+	/**
+	 * The segments of a buffer. They don't reference the buffer, therefore
+	 * they can be returned to the pool after the buffer is not referenced
+	 * anymore.
+	 */
+	private static class AllocatedSegments implements Runnable {
+		private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+		//Set before the segments are read. It is never cleared, because a
+		//view may be created while the buffer is reset.
+		volatile boolean exposed = false;
+
+		synchronized void add(ByteBuffer segment) {
+			segments.add(segment);
+		}
+
+		synchronized void giveBackUnlessExposed() {
+			if (!exposed)
+				for (ByteBuffer segment: segments)
+					POOL.giveBack(segment);
+			segments.clear();
+		}
+
+		public void run() {
+			giveBackUnlessExposed();
+		}
+	}
+
+	/**
+	 * Keeps direct buffers for reuse. The pool only keeps buffers up to a
+	 * maximum total capacity. Other buffers are left to the garbage
+	 * collector.
+	 */
+	private static class SegmentPool {
+		private final long maxCapacity;
+		private final Map<Integer, List<ByteBuffer>> segmentsByCapacity
+			= new HashMap<Integer, List<ByteBuffer>>();
+		private long capacity = 0;
+
+		SegmentPool(long maxCapacity) {
+			this.maxCapacity = maxCapacity;
+		}
+
+		synchronized ByteBuffer take(int capacity) {
+			List<ByteBuffer> segments = segmentsByCapacity.get(capacity);
+			if (segments == null || segments.isEmpty())
+				return ByteBuffer.allocateDirect(capacity);
+			this.capacity -= capacity;
+			return segments.remove(segments.size() - 1);
+		}
+
+		synchronized void giveBack(ByteBuffer segment) {
+			if (capacity + segment.capacity() > maxCapacity)
+				return;
+			segment.clear();
+			List<ByteBuffer> segments
+				= segmentsByCapacity.get(segment.capacity());
+			if (segments == null) {
+				segments = new ArrayList<ByteBuffer>();
+				segmentsByCapacity.put(segment.capacity(), segments);
+			}
+			segments.add(segment);
+			capacity += segment.capacity();
+		}
+	}
+}
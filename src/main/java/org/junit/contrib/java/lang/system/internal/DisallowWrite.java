@@ -4,21 +4,47 @@ import org.junit.runners.model.Statement;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 
 public class DisallowWrite {
+	private static final String DEFAULT_ENCODING = Charset.defaultCharset().name();
+	private static final int MAX_LENGTH_OF_REPORTED_LINE = 1024;
 	private final PrintStreamHandler printStreamHandler;
+	private boolean budget = false;
+	private long maxNumberOfBytes;
+	private long maxNumberOfLines;
 
 	public DisallowWrite(PrintStreamHandler printStreamHandler) {
 		this.printStreamHandler = printStreamHandler;
 	}
 
+	public void allowAtMost(long numberOfBytes, long numberOfLines) {
+		if (numberOfBytes < 0 || numberOfLines < 0)
+			throw new IllegalArgumentException("The number of bytes ("
+				+ numberOfBytes + ") and the number of lines ("
+				+ numberOfLines + ") must not be negative.");
+		budget = true;
+		maxNumberOfBytes = numberOfBytes;
+		maxNumberOfLines = numberOfLines;
+	}
+
 	public Statement createStatement(final Statement base) {
 		return printStreamHandler.createRestoreStatement(new Statement() {
 			@Override
 			public void evaluate() throws Throwable {
-				printStreamHandler.replaceCurrentStreamWithOutputStream(
-					new DisallowWriteStream());
-				base.evaluate();
+				if (budget) {
+					BudgetStream stream = new BudgetStream();
+					printStreamHandler.replaceCurrentStreamWithOutputStream(
+						stream);
+					base.evaluate();
+					//the budget may have been exceeded by another thread
+					stream.verify();
+				} else {
+					printStreamHandler.replaceCurrentStreamWithOutputStream(
+						new DisallowWriteStream());
+					base.evaluate();
+				}
 			}
 		});
 	}
@@ -30,4 +56,75 @@ public class DisallowWrite {
 				+ "' although this is not allowed.");
 		}
 	}
+
+	/**
+	 * Counts the written bytes and lines. Only the beginning of the current
+	 * line is stored, so that it can be reported when the budget is
+	 * exceeded.
+	 */
+	private class BudgetStream extends OutputStream {
+		private final byte[] currentLine = new byte[MAX_LENGTH_OF_REPORTED_LINE];
+		private int lengthOfCurrentLine = 0;
+		private long numberOfBytes = 0;
+		private long numberOfLines = 0;
+		private AssertionError error;
+
+		@Override
+		public synchronized void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			if (error != null)
+				throw error;
+			int end = off + len;
+			for (int i = off; i < end; ++i) {
+				boolean endOfLine = b[i] == '\n';
+				++numberOfBytes;
+				if (endOfLine)
+					++numberOfLines;
+				else if (lengthOfCurrentLine < currentLine.length)
+					currentLine[lengthOfCurrentLine++] = b[i];
+				if (numberOfBytes > maxNumberOfBytes
+						|| numberOfLines > maxNumberOfLines)
+					fail(b, endOfLine ? i : i + 1, end);
+				if (endOfLine)
+					lengthOfCurrentLine = 0;
+			}
+		}
+
+		private void fail(byte[] b, int startOfRest, int endOfRest) {
+			//the line is completed by the rest of the current write.
+			for (int i = startOfRest; i < endOfRest && b[i] != '\n'
+					&& lengthOfCurrentLine < currentLine.length; ++i)
+				currentLine[lengthOfCurrentLine++] = b[i];
+			error = new AssertionError("Tried to write more than "
+				+ maxNumberOfBytes + " bytes or " + maxNumberOfLines
+				+ " lines to " + printStreamHandler.getNameOfStream()
+				+ ". The limit has been exceeded by the line \""
+				+ currentLine() + "\" that has been written by "
+				+ CallSites.callSite() + ".");
+			throw error;
+		}
+
+		private String currentLine() {
+			int length = lengthOfCurrentLine;
+			if (length > 0 && currentLine[length - 1] == '\r')
+				--length;
+			try {
+				return new String(currentLine, 0, length, DEFAULT_ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(
+					"The default encoding " + DEFAULT_ENCODING
+						+ " is not supported.",
+					e);
+			}
+		}
+
+		synchronized void verify() {
+			if (error != null)
+				throw error;
+		}
+	}
 }
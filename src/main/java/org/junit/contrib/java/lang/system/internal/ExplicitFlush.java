@@ -0,0 +1,58 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Marks flushes that have been requested by the users of a
+ * {@code PrintStream}. The {@code PrintStream}s that capture the output
+ * flush automatically, too. Streams that are flushed by them can ask
+ * whether the current flush has been requested explicitly.
+ */
+class ExplicitFlush {
+	private static final ThreadLocal<Boolean> IN_PROGRESS
+		= new ThreadLocal<Boolean>();
+
+	/**
+	 * Marks the start of an explicit flush of the current thread.
+	 *
+	 * @return whether an explicit flush has already been in progress. This
+	 * value has to be passed to {@link #end(boolean)}.
+	 */
+	static boolean begin() {
+		boolean inProgress = isInProgress();
+		IN_PROGRESS.set(Boolean.TRUE);
+		return inProgress;
+	}
+
+	static void end(boolean inProgressBefore) {
+		if (!inProgressBefore)
+			IN_PROGRESS.remove();
+	}
+
+	static boolean isInProgress() {
+		return IN_PROGRESS.get() != null;
+	}
+
+	/**
+	 * A {@code PrintStream} that marks calls of {@link #flush()}. Its
+	 * automatic flushes are not marked.
+	 */
+	static class MarkingPrintStream extends PrintStream {
+		MarkingPrintStream(OutputStream out, boolean autoFlush,
+				String encoding) throws UnsupportedEncodingException {
+			super(out, autoFlush, encoding);
+		}
+
+		@Override
+		public void flush() {
+			boolean inProgressBefore = begin();
+			try {
+				super.flush();
+			} finally {
+				end(inProgressBefore);
+			}
+		}
+	}
+}
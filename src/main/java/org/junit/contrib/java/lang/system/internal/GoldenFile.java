@@ -0,0 +1,205 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Compares a {@link LogBuffer} with a file. The file is mapped to memory
+ * region by region and compared with the segments of the buffer chunk by
+ * chunk. Neither the file nor the buffer are copied to the heap. The
+ * comparison stops at the first difference. Only the line with the
+ * difference is decoded for the message of the error. Long lines are
+ * shortened.
+ */
+class GoldenFile {
+	private static final int REGION_SIZE = 64 * 1024 * 1024;
+	private static final int MAX_CONTEXT = 80;
+	private final File file;
+	private final String charsetName;
+
+	GoldenFile(File file, String charsetName) {
+		this.file = file;
+		this.charsetName = charsetName;
+	}
+
+	/**
+	 * Throws an {@code AssertionError} if the bytes of the buffer differ
+	 * from the bytes of the file.
+	 *
+	 * @param log the buffer that is compared with the file.
+	 * @param nameOfStream the name of the stream that is logged by the
+	 * buffer (for the message of the error).
+	 * @throws IOException if the file cannot be read.
+	 */
+	void assertMatches(LogBuffer log, String nameOfStream)
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long sizeOfFile = channel.size();
+			List<ByteBuffer> segments = log.getSegments();
+			long sizeOfLog = sizeOf(segments);
+			long position = lengthOfCommonPrefix(
+				segments, channel, sizeOfFile);
+			if (position != sizeOfLog || position != sizeOfFile)
+				throw new AssertionError(message(log, sizeOfLog, channel,
+					sizeOfFile, position, nameOfStream));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static long sizeOf(List<ByteBuffer> segments) {
+		long size = 0;
+		for (ByteBuffer segment: segments)
+			size += segment.remaining();
+		return size;
+	}
+
+	private static long lengthOfCommonPrefix(List<ByteBuffer> segments,
+			FileChannel channel, long sizeOfFile) throws IOException {
+		long position = 0;
+		ByteBuffer region = null;
+		for (ByteBuffer segment: segments)
+			while (segment.hasRemaining()) {
+				if (position == sizeOfFile)
+					return position;
+				if (region == null || !region.hasRemaining())
+					region = channel.map(READ_ONLY, position,
+						min(REGION_SIZE, sizeOfFile - position));
+				int length = min(segment.remaining(), region.remaining());
+				int indexOfMismatch = indexOfMismatch(segment, region, length);
+				if (indexOfMismatch >= 0)
+					return position + indexOfMismatch;
+				position += length;
+			}
+		return position;
+	}
+
+	/**
+	 * Compares the next {@code length} bytes of both buffers and moves the
+	 * positions of the buffers behind them.
+	 *
+	 * @return the index of the first byte that differs or {@code -1} if
+	 * all bytes are equal.
+	 */
+	private static int indexOfMismatch(ByteBuffer a, ByteBuffer b, int length) {
+		ByteBuffer chunkOfA = a.slice();
+		chunkOfA.limit(length);
+		ByteBuffer chunkOfB = b.slice();
+		chunkOfB.limit(length);
+		a.position(a.position() + length);
+		b.position(b.position() + length);
+		if (chunkOfA.equals(chunkOfB))
+			return -1;
+		for (int i = 0; i < length; ++i)
+			if (chunkOfA.get(i) != chunkOfB.get(i))
+				return i;
+		return -1;
+	}
+
+	private String message(LogBuffer log, long sizeOfLog, FileChannel channel,
+			long sizeOfFile, long position, String nameOfStream)
+			throws IOException {
+		LineOfPosition line = new LineOfPosition(log.getSegments(), position);
+		byte[] expected = read(channel, line.startOfContext);
+		byte[] actual = read(log.getSegments(), line.startOfContext);
+		String difference;
+		if (position == sizeOfLog)
+			difference = "ends at line " + line.number + " but the file "
+				+ file + " continues.";
+		else if (position == sizeOfFile)
+			difference = "continues at line " + line.number
+				+ " but the file " + file + " ends.";
+		else
+			difference = "differs from the file " + file + " at line "
+				+ line.number + ".";
+		return "The log of " + nameOfStream + " " + difference
+			+ "\nexpected: " + context(expected, line)
+			+ "\nbut was:  " + context(actual, line);
+	}
+
+	private static byte[] read(FileChannel channel, long position)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(2 * MAX_CONTEXT);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) <= 0)
+				break;
+		return bytesOfBuffer(buffer);
+	}
+
+	private static byte[] read(List<ByteBuffer> segments, long position) {
+		ByteBuffer buffer = ByteBuffer.allocate(2 * MAX_CONTEXT);
+		long startOfSegment = 0;
+		for (ByteBuffer segment: segments) {
+			long endOfSegment = startOfSegment + segment.remaining();
+			if (endOfSegment > position) {
+				if (startOfSegment < position)
+					segment.position(
+						segment.position() + (int) (position - startOfSegment));
+				while (segment.hasRemaining() && buffer.hasRemaining())
+					buffer.put(segment.get());
+				if (!buffer.hasRemaining())
+					break;
+			}
+			startOfSegment = endOfSegment;
+		}
+		return bytesOfBuffer(buffer);
+	}
+
+	private static byte[] bytesOfBuffer(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private String context(byte[] bytes, LineOfPosition line)
+			throws UnsupportedEncodingException {
+		int end = 0;
+		while (end < bytes.length && bytes[end] != '\n')
+			++end;
+		boolean shortened = end == 2 * MAX_CONTEXT;
+		if (end > 0 && bytes[end - 1] == '\r')
+			--end;
+		return (line.shortened ? "..." : "")
+			+ "\"" + new String(bytes, 0, end, charsetName) + "\""
+			+ (shortened ? "..." : "");
+	}
+
+	/**
+	 * The number of the line that contains a position and the start of
+	 * the text that is shown for this line.
+	 */
+	private static class LineOfPosition {
+		final long number;
+		final long startOfContext;
+		final boolean shortened;
+
+		LineOfPosition(List<ByteBuffer> segments, long position) {
+			long number = 1;
+			long startOfLine = 0;
+			long positionOfByte = 0;
+			for (ByteBuffer segment: segments)
+				while (segment.hasRemaining() && positionOfByte < position) {
+					if (segment.get() == '\n') {
+						++number;
+						startOfLine = positionOfByte + 1;
+					}
+					++positionOfByte;
+				}
+			this.number = number;
+			this.startOfContext = max(startOfLine, position - MAX_CONTEXT);
+			this.shortened = startOfContext > startOfLine;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.nio.charset.CodingErrorAction.REPLACE;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.List;
+
+/**
+ * Decodes the text of a {@link LogBuffer}. Each byte is decoded only once.
+ * Subsequent calls of {@link #getText(LogBuffer, String)} only decode the
+ * bytes that have been written in the meantime. Characters that are split
+ * across multiple writes are decoded correctly.
+ *
+ * <p>The texts that are returned by {@link #getText(LogBuffer, String)} and
+ * {@link #getTextWithNormalizedLineSeparator(LogBuffer, String, String)} are
+ * cached until new bytes are decoded. Therefore subsequent calls without new
+ * output don't copy the text.
+ *
+ * <p>Buffers that drop bytes are decoded completely on every call, because
+ * their text does not grow.
+ */
+class IncrementalDecoder {
+	private static final int MAX_BYTES_PER_CHAR = 16;
+	private final CharSegments text = new CharSegments();
+	private final CharBuffer chunk = CharBuffer.allocate(8192);
+	private final ByteBuffer bytesOfIncompleteChar
+		= ByteBuffer.allocate(MAX_BYTES_PER_CHAR);
+	private CharsetDecoder decoder;
+	private long numberOfDecodedBytes = 0;
+	private String cachedText;
+	private String cachedNormalizedText;
+	private String separatorOfCachedNormalizedText;
+
+	/**
+	 * Returns the text of the buffer.
+	 *
+	 * @param buffer the buffer with the bytes of the text.
+	 * @param charsetName the name of the text's charset.
+	 * @return the decoded text.
+	 */
+	synchronized String getText(LogBuffer buffer, String charsetName) {
+		if (buffer.getNumberOfDroppedBytes() != 0)
+			return decodeCompletely(buffer.getSegments(), charsetName);
+		decodeNewBytes(buffer, charsetName);
+		if (cachedText == null)
+			cachedText = currentText();
+		return cachedText;
+	}
+
+	/**
+	 * Returns the text of the buffer with each line separator replaced by a
+	 * single {@code \n}. Only new bytes are decoded. The normalized text is
+	 * created once for all calls between two writes of new bytes.
+	 *
+	 * @param buffer the buffer with the bytes of the text.
+	 * @param charsetName the name of the text's charset.
+	 * @param lineSeparator the line separator that is replaced.
+	 * @return the decoded text with normalized line separators.
+	 */
+	synchronized String getTextWithNormalizedLineSeparator(
+			LogBuffer buffer, String charsetName, String lineSeparator) {
+		if (buffer.getNumberOfDroppedBytes() != 0)
+			return decodeCompletely(buffer.getSegments(), charsetName)
+				.replace(lineSeparator, "\n");
+		if (lineSeparator.equals("\n"))
+			return getText(buffer, charsetName);
+		decodeNewBytes(buffer, charsetName);
+		if (cachedNormalizedText == null
+				|| !lineSeparator.equals(separatorOfCachedNormalizedText)) {
+			cachedNormalizedText = normalize(lineSeparator);
+			separatorOfCachedNormalizedText = lineSeparator;
+		}
+		return cachedNormalizedText;
+	}
+
+	/**
+	 * Decodes the bytes that have been written since the last call and
+	 * returns the number of decoded chars. A char whose bytes have not been
+	 * written completely is not counted.
+	 *
+	 * @param buffer the buffer with the bytes of the text.
+	 * @param charsetName the name of the text's charset.
+	 * @return the number of decoded chars.
+	 */
+	synchronized int getLengthOfDecodedText(
+			LogBuffer buffer, String charsetName) {
+		decodeNewBytes(buffer, charsetName);
+		return text.length();
+	}
+
+	/**
+	 * Returns the chars that have been decoded so far. They are not copied
+	 * and grow when new bytes are decoded. They can be read without locking
+	 * the decoder.
+	 *
+	 * @return the decoded chars.
+	 */
+	CharSegments getDecodedText() {
+		return text;
+	}
+
+	private void decodeNewBytes(LogBuffer buffer, String charsetName) {
+		if (decoder == null || !decoder.charset().name().equals(
+				Charset.forName(charsetName).name())
+				|| buffer.size() < numberOfDecodedBytes) {
+			reset();
+			decoder = newDecoder(charsetName);
+		}
+		if (buffer.size() > numberOfDecodedBytes) {
+			discardCachedTexts();
+			decodeNewBytes(buffer.getSegments());
+		}
+	}
+
+	private void discardCachedTexts() {
+		cachedText = null;
+		cachedNormalizedText = null;
+		separatorOfCachedNormalizedText = null;
+	}
+
+	/**
+	 * Replaces each separator by {@code \n}. The chars are read segment by
+	 * segment. The number of chars that match the beginning of the separator
+	 * is kept across the segments, because a separator may be split by the
+	 * end of a segment.
+	 */
+	private String normalize(String separator) {
+		int length = text.length();
+		StringBuilder normalizedText = new StringBuilder(length);
+		int numberOfMatchingChars = 0;
+		int index = 0;
+		while (index < length) {
+			CharBuffer segment = text.charsOfSegmentFrom(index);
+			index += segment.remaining();
+			while (segment.hasRemaining()) {
+				char c = segment.get();
+				if (c == separator.charAt(numberOfMatchingChars)) {
+					if (++numberOfMatchingChars == separator.length()) {
+						normalizedText.append('\n');
+						numberOfMatchingChars = 0;
+					}
+				} else {
+					normalizedText.append(separator, 0, numberOfMatchingChars);
+					numberOfMatchingChars = 0;
+					if (c == separator.charAt(0))
+						numberOfMatchingChars = 1;
+					else
+						normalizedText.append(c);
+				}
+			}
+		}
+		normalizedText.append(separator, 0, numberOfMatchingChars);
+		normalizedText.append(textOfIncompleteChar());
+		return normalizedText.toString();
+	}
+
+	/**
+	 * Discards the decoded text. This has to be called when the buffer is
+	 * reset.
+	 */
+	synchronized void reset() {
+		text.reset();
+		discardCachedTexts();
+		bytesOfIncompleteChar.clear();
+		if (decoder != null)
+			decoder.reset();
+		numberOfDecodedBytes = 0;
+	}
+
+	private void decodeNewBytes(List<ByteBuffer> segments) {
+		long bytesToSkip = numberOfDecodedBytes;
+		for (ByteBuffer segment: segments) {
+			if (bytesToSkip >= segment.remaining()) {
+				bytesToSkip -= segment.remaining();
+				continue;
+			}
+			segment.position(segment.position() + (int) bytesToSkip);
+			bytesToSkip = 0;
+			numberOfDecodedBytes += segment.remaining();
+			decodeSegment(segment);
+		}
+	}
+
+	private void decodeSegment(ByteBuffer segment) {
+		while (segment.hasRemaining()) {
+			if (bytesOfIncompleteChar.position() == 0) {
+				decode(segment);
+				if (segment.hasRemaining())
+					bytesOfIncompleteChar.put(segment);
+			} else {
+				//complete the char byte by byte
+				bytesOfIncompleteChar.put(segment.get());
+				bytesOfIncompleteChar.flip();
+				decode(bytesOfIncompleteChar);
+				bytesOfIncompleteChar.compact();
+			}
+		}
+	}
+
+	private void decode(ByteBuffer bytes) {
+		while (decoder.decode(bytes, chunk, false).isOverflow())
+			appendChunk();
+		appendChunk();
+	}
+
+	private void appendChunk() {
+		chunk.flip();
+		text.append(chunk);
+		chunk.clear();
+	}
+
+	private String currentText() {
+		if (bytesOfIncompleteChar.position() == 0)
+			return text.toString();
+		String textOfIncompleteChar = textOfIncompleteChar();
+		StringBuilder builder = new StringBuilder(
+			text.length() + textOfIncompleteChar.length());
+		text.appendTo(builder, 0, text.length());
+		return builder.append(textOfIncompleteChar).toString();
+	}
+
+	/**
+	 * Returns the bytes of an incomplete char decoded with the charset's
+	 * replacement like they would be decoded at the end of the input. They
+	 * are still decoded correctly when the char is completed by subsequent
+	 * bytes.
+	 */
+	private String textOfIncompleteChar() {
+		if (bytesOfIncompleteChar.position() == 0)
+			return "";
+		ByteBuffer bytes = bytesOfIncompleteChar.duplicate();
+		bytes.flip();
+		return decodeAtEndOfInput(bytes, decoder.charset().name());
+	}
+
+	private static String decodeCompletely(
+			List<ByteBuffer> segments, String charsetName) {
+		IncrementalDecoder decoder = new IncrementalDecoder();
+		decoder.decoder = newDecoder(charsetName);
+		decoder.decodeNewBytes(segments);
+		return decoder.currentText();
+	}
+
+	private static String decodeAtEndOfInput(
+			ByteBuffer bytes, String charsetName) {
+		try {
+			return newDecoder(charsetName).decode(bytes).toString();
+		} catch (CharacterCodingException e) {
+			throw new IllegalStateException(
+				"Decoder with replacement threw an exception.", e);
+		}
+	}
+
+	private static CharsetDecoder newDecoder(String charsetName) {
+		return Charset.forName(charsetName).newDecoder()
+			.onMalformedInput(REPLACE)
+			.onUnmappableCharacter(REPLACE);
+	}
+}
@@ -0,0 +1,51 @@
+package org.junit.contrib.java.lang.system.internal;
+
+/**
+ * The lines that have been recorded by a {@link LineEventRecorder} together
+ * with the time and the thread that has written them. The log is immutable.
+ * The lines are decoded when they are requested.
+ */
+public final class LineEventLog {
+	private final long startTime;
+	private final long[] nanoTimes;
+	private final long[] threadIds;
+	private final String[] threadNames;
+	private final int[] offsets;
+	private final byte[] bytesOfLines;
+
+	LineEventLog(long startTime, long[] nanoTimes, long[] threadIds,
+			String[] threadNames, int[] offsets, byte[] bytesOfLines) {
+		this.startTime = startTime;
+		this.nanoTimes = nanoTimes;
+		this.threadIds = threadIds;
+		this.threadNames = threadNames;
+		this.offsets = offsets;
+		this.bytesOfLines = bytesOfLines;
+	}
+
+	public int size() {
+		return nanoTimes.length;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getNanoTime(int index) {
+		return nanoTimes[index];
+	}
+
+	public long getThreadId(int index) {
+		return threadIds[index];
+	}
+
+	public String getThreadName(int index) {
+		return threadNames[index];
+	}
+
+	public String getLine(int index) {
+		int start = offsets[index];
+		return LineSplitter.decode(
+			bytesOfLines, start, offsets[index + 1] - start);
+	}
+}
@@ -0,0 +1,120 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.System.nanoTime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the time and the writing thread of every completed line.
+ *
+ * <p>The events are stored in primitive arrays. The bytes of all lines are
+ * stored in a single array and each event only stores the offset of its
+ * line. The lines are decoded when they are requested. Each name of a
+ * thread is stored once.
+ */
+class LineEventRecorder extends ThreadLineSplitter {
+	private long startTime = nanoTime();
+	private long[] nanoTimes = new long[64];
+	private long[] threadIds = new long[64];
+	private String[] threadNames = new String[64];
+	private final Map<String, String> namesOfThreads
+		= new HashMap<String, String>();
+	//offsets[i] is the start of line i and the end of line i - 1
+	private int[] offsets = new int[65];
+	private byte[] bytesOfLines = new byte[1024];
+	private int numberOfEvents = 0;
+
+	/**
+	 * Discards all events and uses the current time as start time.
+	 */
+	synchronized void reset() {
+		startTime = nanoTime();
+		nanoTimes = new long[64];
+		threadIds = new long[64];
+		threadNames = new String[64];
+		namesOfThreads.clear();
+		offsets = new int[65];
+		//the array may be used by a LineEventLog
+		bytesOfLines = new byte[1024];
+		numberOfEvents = 0;
+	}
+
+	@Override
+	void lineCompleted(byte[] line, int length) {
+		record(line, length, Thread.currentThread());
+	}
+
+	private synchronized void record(byte[] line, int length, Thread thread) {
+		long time = nanoTime();
+		if (numberOfEvents == nanoTimes.length)
+			grow();
+		int offset = offsets[numberOfEvents];
+		ensureCapacityOfBytes(offset + length);
+		System.arraycopy(line, 0, bytesOfLines, offset, length);
+		nanoTimes[numberOfEvents] = time;
+		threadIds[numberOfEvents] = thread.getId();
+		threadNames[numberOfEvents] = nameOf(thread);
+		offsets[numberOfEvents + 1] = offset + length;
+		++numberOfEvents;
+	}
+
+	private String nameOf(Thread thread) {
+		String name = thread.getName();
+		String storedName = namesOfThreads.get(name);
+		if (storedName == null) {
+			namesOfThreads.put(name, name);
+			return name;
+		} else
+			return storedName;
+	}
+
+	private void grow() {
+		int newLength = 2 * numberOfEvents;
+		nanoTimes = copyOf(nanoTimes, newLength);
+		threadIds = copyOf(threadIds, newLength);
+		threadNames = copyOf(threadNames, newLength);
+		offsets = copyOf(offsets, newLength + 1);
+	}
+
+	private void ensureCapacityOfBytes(int capacity) {
+		if (capacity > bytesOfLines.length) {
+			byte[] newBytes = new byte[Math.max(capacity, 2 * bytesOfLines.length)];
+			System.arraycopy(bytesOfLines, 0, newBytes, 0, offsets[numberOfEvents]);
+			bytesOfLines = newBytes;
+		}
+	}
+
+	/**
+	 * Returns the events that have been recorded so far. The bytes of the
+	 * lines are not copied. They are shared with the recorder, which only
+	 * appends bytes behind them.
+	 */
+	synchronized LineEventLog getEvents() {
+		return new LineEventLog(startTime,
+			copyOf(nanoTimes, numberOfEvents),
+			copyOf(threadIds, numberOfEvents),
+			copyOf(threadNames, numberOfEvents),
+			copyOf(offsets, numberOfEvents + 1),
+			bytesOfLines);
+	}
+
+	//Arrays.copyOf is not available in Java 5
+	private static long[] copyOf(long[] array, int length) {
+		long[] copy = new long[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static String[] copyOf(String[] array, int length) {
+		String[] copy = new String[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
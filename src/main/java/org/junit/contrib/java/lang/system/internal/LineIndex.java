@@ -0,0 +1,191 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An index of the lines of a {@link LogBuffer}. It stores the offset of each
+ * line's first byte in a primitive array. Lines are read directly from the
+ * buffer's segments without decoding the whole text. Like the
+ * {@link IncrementalDecoder} the index only scans the bytes that have been
+ * written since it has been used the last time.
+ *
+ * <p>A line is terminated by {@code \n}. A {@code \r} in front of the
+ * {@code \n} is not part of the line. Therefore the index only works for
+ * charsets that encode {@code \n} as a single byte {@code 0x0A}.
+ *
+ * <p>Buffers that drop bytes are indexed completely whenever new bytes have
+ * been written.
+ */
+class LineIndex {
+	private long[] startsOfLines = new long[16];
+	private int numberOfCompletedLines = 0;
+	private long numberOfIndexedBytes = 0;
+	private long numberOfDroppedBytes = 0;
+	private List<ByteBuffer> segments;
+	private long[] startsOfSegments;
+
+	synchronized int getLineCount(LogBuffer buffer) {
+		update(buffer);
+		return lineCount();
+	}
+
+	synchronized String getLine(
+			LogBuffer buffer, int index, String charsetName) {
+		update(buffer);
+		if (index < 0 || index >= lineCount())
+			throw new IndexOutOfBoundsException("The log has "
+				+ lineCount() + " lines, hence there is no line " + index
+				+ ".");
+		return readLine(index, charsetName);
+	}
+
+	synchronized List<String> getLines(
+			LogBuffer buffer, int from, int to, String charsetName) {
+		update(buffer);
+		if (from < 0 || to > lineCount() || from > to)
+			throw new IndexOutOfBoundsException("Cannot provide the lines "
+				+ from + " to " + to + " because the log has "
+				+ lineCount() + " lines.");
+		List<String> lines = new ArrayList<String>(to - from);
+		for (int i = from; i < to; ++i)
+			lines.add(readLine(i, charsetName));
+		return lines;
+	}
+
+	/**
+	 * Returns the lines that have been written so far. The lines are read
+	 * from the buffer when they are requested by the iterator.
+	 */
+	Iterable<String> lines(
+			final LogBuffer buffer, final String charsetName) {
+		final int numberOfLines = getLineCount(buffer);
+		return new Iterable<String>() {
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int index = 0;
+
+					public boolean hasNext() {
+						return index < numberOfLines;
+					}
+
+					public String next() {
+						if (!hasNext())
+							throw new NoSuchElementException();
+						return getLine(buffer, index++, charsetName);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException(
+							"The log cannot be modified.");
+					}
+				};
+			}
+		};
+	}
+
+	synchronized void reset() {
+		startsOfLines = new long[16];
+		numberOfCompletedLines = 0;
+		numberOfIndexedBytes = 0;
+		numberOfDroppedBytes = 0;
+		segments = null;
+	}
+
+	private void update(LogBuffer buffer) {
+		long size = buffer.size();
+		long numberOfDroppedBytes = buffer.getNumberOfDroppedBytes();
+		if (segments != null && size == numberOfIndexedBytes
+				&& numberOfDroppedBytes == this.numberOfDroppedBytes)
+			return;
+		if (numberOfDroppedBytes != 0 || size < numberOfIndexedBytes)
+			reset();
+		this.numberOfDroppedBytes = numberOfDroppedBytes;
+		segments = buffer.getSegments();
+		startsOfSegments = new long[segments.size()];
+		long offset = 0;
+		for (int i = 0; i < segments.size(); ++i) {
+			ByteBuffer segment = segments.get(i);
+			startsOfSegments[i] = offset;
+			int length = segment.remaining();
+			if (offset + length > numberOfIndexedBytes)
+				indexSegment(segment, offset);
+			offset += length;
+		}
+		numberOfIndexedBytes = offset;
+	}
+
+	private void indexSegment(ByteBuffer segment, long offsetOfSegment) {
+		int start = segment.position()
+			+ (int) Math.max(0, numberOfIndexedBytes - offsetOfSegment);
+		for (int i = start; i < segment.limit(); ++i)
+			if (segment.get(i) == '\n')
+				addEndOfLine(offsetOfSegment + i - segment.position());
+	}
+
+	private void addEndOfLine(long offsetOfLineFeed) {
+		if (numberOfCompletedLines + 1 >= startsOfLines.length) {
+			long[] newStarts = new long[2 * startsOfLines.length];
+			System.arraycopy(startsOfLines, 0, newStarts, 0,
+				numberOfCompletedLines + 1);
+			startsOfLines = newStarts;
+		}
+		startsOfLines[++numberOfCompletedLines] = offsetOfLineFeed + 1;
+	}
+
+	private int lineCount() {
+		boolean lastLineIsIncomplete
+			= numberOfIndexedBytes > startsOfLines[numberOfCompletedLines];
+		return lastLineIsIncomplete
+			? numberOfCompletedLines + 1
+			: numberOfCompletedLines;
+	}
+
+	private String readLine(int index, String charsetName) {
+		long start = startsOfLines[index];
+		long end = index < numberOfCompletedLines
+			? startsOfLines[index + 1] - 1 //without \n
+			: numberOfIndexedBytes;
+		byte[] bytes = read(start, (int) (end - start));
+		int length = bytes.length;
+		if (index < numberOfCompletedLines && length > 0
+				&& bytes[length - 1] == '\r')
+			--length;
+		try {
+			return new String(bytes, 0, length, charsetName);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException(
+				"The encoding " + charsetName + " is not supported.", e);
+		}
+	}
+
+	private byte[] read(long offset, int length) {
+		byte[] bytes = new byte[length];
+		int numberOfCopiedBytes = 0;
+		int indexOfSegment = indexOfSegmentWithOffset(offset);
+		while (numberOfCopiedBytes < length) {
+			ByteBuffer segment = segments.get(indexOfSegment).duplicate();
+			long start = offset + numberOfCopiedBytes
+				- startsOfSegments[indexOfSegment];
+			segment.position(segment.position() + (int) start);
+			int lengthOfChunk = Math.min(
+				length - numberOfCopiedBytes, segment.remaining());
+			segment.get(bytes, numberOfCopiedBytes, lengthOfChunk);
+			numberOfCopiedBytes += lengthOfChunk;
+			++indexOfSegment;
+		}
+		return bytes;
+	}
+
+	private int indexOfSegmentWithOffset(long offset) {
+		int index = Arrays.binarySearch(startsOfSegments, offset);
+		//the binary search returns (-(insertion point) - 1) if the offset
+		//is not the start of a segment.
+		return index >= 0 ? index : -index - 2;
+	}
+}
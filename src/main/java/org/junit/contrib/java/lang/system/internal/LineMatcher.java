@@ -0,0 +1,111 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link ThreadLineSplitter} that checks each line as soon as it is
+ * completed. It fails immediately by throwing an {@code AssertionError} to
+ * the thread that writes the line. The error is stored, too, because the
+ * writing thread may not be the test's thread. {@link #verify()} throws the
+ * stored error.
+ */
+abstract class LineMatcher extends ThreadLineSplitter {
+	private volatile AssertionError error;
+
+	/**
+	 * Creates a matcher that fails as soon as a line contains a match for
+	 * the specified regular expression.
+	 *
+	 * @param regex the regular expression.
+	 * @return the new matcher.
+	 */
+	static LineMatcher failOnLineMatching(String regex) {
+		final Pattern pattern = Pattern.compile(regex);
+		return new LineMatcher() {
+			@Override
+			void checkLine(String line) {
+				if (pattern.matcher(line).find())
+					fail("The line \"" + line + "\" matches the pattern \""
+						+ pattern + "\".");
+			}
+
+			@Override
+			void checkEndOfOutput() {
+			}
+		};
+	}
+
+	/**
+	 * Creates a matcher that fails if none of the next lines contains a
+	 * match for the specified regular expression.
+	 *
+	 * @param numberOfLines the number of lines that may be written before
+	 *                      the expected line.
+	 * @param regex the regular expression.
+	 * @return the new matcher.
+	 */
+	static LineMatcher expectWithin(
+			final int numberOfLines, String regex) {
+		if (numberOfLines <= 0)
+			throw new IllegalArgumentException(
+				"The number of lines must be positive but is "
+					+ numberOfLines + ".");
+		final Pattern pattern = Pattern.compile(regex);
+		return new LineMatcher() {
+			private int numberOfCheckedLines = 0;
+			private boolean found = false;
+
+			@Override
+			void checkLine(String line) {
+				if (found)
+					return;
+				++numberOfCheckedLines;
+				if (pattern.matcher(line).find())
+					found = true;
+				else if (numberOfCheckedLines == numberOfLines)
+					fail("None of the " + numberOfLines + " lines matches"
+						+ " the pattern \"" + pattern + "\". The last line"
+						+ " is \"" + line + "\".");
+			}
+
+			@Override
+			void checkEndOfOutput() {
+				if (!found)
+					fail("None of the " + numberOfCheckedLines + " lines"
+						+ " matches the pattern \"" + pattern + "\".");
+			}
+		};
+	}
+
+	@Override
+	synchronized void lineCompleted(byte[] line, int length) {
+		if (error == null)
+			checkLine(LineSplitter.decode(line, 0, length));
+	}
+
+	void fail(String message) {
+		error = new AssertionError(message);
+		throw error;
+	}
+
+	/**
+	 * Throws the error that has been thrown while checking the lines.
+	 * Otherwise it checks the lines that have not been completed and whether
+	 * the output as a whole is as expected.
+	 */
+	void verify() throws IOException {
+		if (error != null)
+			throw error;
+		//not synchronized because writing threads hold the lock of their
+		//LineSplitter while they wait for this matcher
+		completeIncompleteLines();
+		synchronized (this) {
+			checkEndOfOutput();
+		}
+	}
+
+	abstract void checkLine(String line);
+
+	abstract void checkEndOfOutput();
+}
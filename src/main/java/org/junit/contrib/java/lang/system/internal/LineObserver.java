@@ -0,0 +1,8 @@
+package org.junit.contrib.java.lang.system.internal;
+
+/**
+ * Is notified about every line that is written to a {@link LogPrintStream}.
+ */
+public interface LineObserver {
+	void lineCompleted(String line);
+}
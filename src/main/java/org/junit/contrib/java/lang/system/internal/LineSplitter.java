@@ -0,0 +1,106 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * An {@code OutputStream} that splits the written bytes into lines. It only
+ * stores the bytes of the current line. A line is completed by {@code \n}. A
+ * {@code \r} in front of the {@code \n} is not part of the line. The line is
+ * decoded with the encoding of the log ({@code file.encoding}).
+ */
+abstract class LineSplitter extends OutputStream {
+	private byte[] currentLine = new byte[128];
+	private int lengthOfCurrentLine = 0;
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		if (b == '\n')
+			completeLine();
+		else
+			appendToCurrentLine((byte) b);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+			throws IOException {
+		int startOfChunk = off;
+		int end = off + len;
+		for (int i = off; i < end; ++i)
+			if (b[i] == '\n') {
+				appendToCurrentLine(b, startOfChunk, i - startOfChunk);
+				startOfChunk = i + 1;
+				completeLine();
+			}
+		appendToCurrentLine(b, startOfChunk, end - startOfChunk);
+	}
+
+	private void appendToCurrentLine(byte b) {
+		ensureCapacity(lengthOfCurrentLine + 1);
+		currentLine[lengthOfCurrentLine++] = b;
+	}
+
+	private void appendToCurrentLine(byte[] b, int off, int len) {
+		ensureCapacity(lengthOfCurrentLine + len);
+		System.arraycopy(b, off, currentLine, lengthOfCurrentLine, len);
+		lengthOfCurrentLine += len;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > currentLine.length) {
+			byte[] newLine = new byte[Math.max(capacity, 2 * currentLine.length)];
+			System.arraycopy(currentLine, 0, newLine, 0, lengthOfCurrentLine);
+			currentLine = newLine;
+		}
+	}
+
+	private void completeLine() throws IOException {
+		int length = lengthOfCurrentLine;
+		if (length > 0 && currentLine[length - 1] == '\r')
+			--length;
+		lengthOfCurrentLine = 0;
+		lineCompleted(currentLine, length);
+	}
+
+	/**
+	 * Completes the text that has been written after the last {@code \n}
+	 * as if a {@code \n} had been written. Nothing happens if there is no
+	 * such text.
+	 *
+	 * @throws IOException if the line cannot be handled.
+	 */
+	synchronized void completeIncompleteLine() throws IOException {
+		if (lengthOfCurrentLine > 0)
+			completeLine();
+	}
+
+	/**
+	 * Decodes a line with the encoding of the log ({@code file.encoding}).
+	 *
+	 * @param bytes an array with the bytes of the line.
+	 * @param offset the index of the line's first byte.
+	 * @param length the number of bytes of the line.
+	 * @return the text of the line.
+	 */
+	static String decode(byte[] bytes, int offset, int length) {
+		String encoding = System.getProperty("file.encoding");
+		try {
+			return new String(bytes, offset, length, encoding);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(
+				"The encoding " + encoding + " is not supported.", e);
+		}
+	}
+
+	/**
+	 * Called for every line that has been completed. The array belongs to
+	 * the splitter and is reused after this method returns.
+	 *
+	 * @param line an array that starts with the bytes of the line. The line
+	 *             separator is not part of the line.
+	 * @param length the number of bytes of the line.
+	 * @throws IOException if the line cannot be handled.
+	 */
+	abstract void lineCompleted(byte[] line, int length) throws IOException;
+}
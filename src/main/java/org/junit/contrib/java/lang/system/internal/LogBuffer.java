@@ -0,0 +1,173 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.min;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * An {@code OutputStream} that stores the bytes that are written to it. The
+ * bytes are provided as a list of read-only segments.
+ */
+abstract class LogBuffer extends OutputStream {
+	/**
+	 * Returns the number of bytes that are stored by the buffer.
+	 *
+	 * @return the number of bytes that are stored by the buffer.
+	 */
+	abstract long size();
+
+	/**
+	 * Returns the number of bytes that have been written to the buffer but
+	 * are no longer stored by it.
+	 *
+	 * @return the number of bytes that have been dropped.
+	 */
+	long getNumberOfDroppedBytes() {
+		return 0;
+	}
+
+	/**
+	 * Discards all bytes and releases the memory that is used for them.
+	 */
+	abstract void reset();
+
+	/**
+	 * Releases resources other than memory (e.g. files) that are held by the
+	 * buffer. Buffers that hold such resources are empty afterwards.
+	 */
+	void release() {
+	}
+
+	/**
+	 * Returns read-only views of the stored bytes. Subsequent writes don't
+	 * modify the views.
+	 *
+	 * @return read-only views of the stored bytes.
+	 */
+	abstract List<ByteBuffer> getSegments();
+
+	/**
+	 * Returns a stream that reads the bytes that have been written so far.
+	 *
+	 * @return a stream that reads the bytes that have been written so far.
+	 */
+	InputStream newInputStream() {
+		return new SegmentsInputStream(getSegments());
+	}
+
+	byte[] toByteArray() {
+		List<ByteBuffer> segments = getSegments();
+		byte[] bytes = new byte[checkedIntSize(segments)];
+		int offset = 0;
+		for (ByteBuffer segment: segments) {
+			int length = segment.remaining();
+			segment.get(bytes, offset, length);
+			offset += length;
+		}
+		return bytes;
+	}
+
+	void writeTo(OutputStream stream) throws IOException {
+		byte[] chunk = new byte[8192];
+		for (ByteBuffer segment: getSegments())
+			while (segment.hasRemaining()) {
+				int length = min(chunk.length, segment.remaining());
+				segment.get(chunk, 0, length);
+				stream.write(chunk, 0, length);
+			}
+	}
+
+	/**
+	 * Writes the stored bytes to the channel without copying them to the
+	 * heap. The segments are written by a single gathering write if the
+	 * channel supports it.
+	 *
+	 * @param channel the channel that receives the bytes.
+	 * @throws IOException if the channel throws it.
+	 */
+	void writeTo(WritableByteChannel channel) throws IOException {
+		List<ByteBuffer> segments = getSegments();
+		if (channel instanceof GatheringByteChannel)
+			writeAll((GatheringByteChannel) channel,
+				segments.toArray(new ByteBuffer[segments.size()]));
+		else
+			for (ByteBuffer segment: segments)
+				while (segment.hasRemaining())
+					channel.write(segment);
+	}
+
+	private static void writeAll(
+			GatheringByteChannel channel, ByteBuffer[] segments)
+			throws IOException {
+		int indexOfFirstRemainingSegment = 0;
+		while (indexOfFirstRemainingSegment < segments.length) {
+			channel.write(segments, indexOfFirstRemainingSegment,
+				segments.length - indexOfFirstRemainingSegment);
+			while (indexOfFirstRemainingSegment < segments.length
+					&& !segments[indexOfFirstRemainingSegment].hasRemaining())
+				++indexOfFirstRemainingSegment;
+		}
+	}
+
+	private static int checkedIntSize(List<ByteBuffer> segments) {
+		long size = 0;
+		for (ByteBuffer segment: segments)
+			size += segment.remaining();
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalStateException("The buffer contains " + size
+				+ " bytes and cannot be copied to a single array.");
+		return (int) size;
+	}
+
+	private static class SegmentsInputStream extends InputStream {
+		private final List<ByteBuffer> segments;
+		private int indexOfCurrentSegment = 0;
+
+		SegmentsInputStream(List<ByteBuffer> segments) {
+			this.segments = segments;
+		}
+
+		@Override
+		public int read() {
+			ByteBuffer segment = nextSegmentWithRemainingBytes();
+			if (segment == null)
+				return -1;
+			else
+				return segment.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			ByteBuffer segment = nextSegmentWithRemainingBytes();
+			if (segment == null)
+				return -1;
+			int length = min(len, segment.remaining());
+			segment.get(b, off, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			ByteBuffer segment = nextSegmentWithRemainingBytes();
+			return segment == null ? 0 : segment.remaining();
+		}
+
+		private ByteBuffer nextSegmentWithRemainingBytes() {
+			while (indexOfCurrentSegment < segments.size()) {
+				ByteBuffer segment = segments.get(indexOfCurrentSegment);
+				if (segment.hasRemaining())
+					return segment;
+				++indexOfCurrentSegment;
+			}
+			return null;
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package org.junit.contrib.java.lang.system.internal;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.runners.model.Statement;
 
@@ -12,6 +19,24 @@ import static java.lang.System.getProperty;
 public class LogPrintStream {
 	private final PrintStreamHandler printStreamHandler;
 	private final MuteableLogStream muteableLogStream;
+	private final List<LineMatcher> lineMatchers
+		= new CopyOnWriteArrayList<LineMatcher>();
+	private final List<ThreadLineSplitter> lineObservers
+		= new CopyOnWriteArrayList<ThreadLineSplitter>();
+	private final IncrementalDecoder logDecoder = new IncrementalDecoder();
+	private final LineIndex lineIndex = new LineIndex();
+	private boolean separateOutputOfThreads = false;
+	private boolean captureWithoutContention = false;
+	//the method that has chosen the storage of the log
+	private String storageOfLog = null;
+	private boolean storageOfLogIncludesFailureLog = false;
+	private boolean failureLogCompressed = false;
+	private boolean writeOriginalStreamInBackground = false;
+	private boolean updateGoldenFiles = false;
+	private LineEventRecorder lineEventRecorder;
+	private CallSiteProfiler callSiteProfiler;
+	private WriteStatisticsRecorder writeStatisticsRecorder;
+	private File failureLogFile;
 
 	public LogPrintStream(PrintStreamHandler printStreamHandler) {
 		this.printStreamHandler = printStreamHandler;
@@ -22,24 +47,134 @@ public class LogPrintStream {
 		return new Statement() {
 			@Override
 			public void evaluate() throws Throwable {
+				if (lineEventRecorder != null)
+					lineEventRecorder.reset();
+				if (callSiteProfiler != null)
+					callSiteProfiler.reset();
+				if (writeStatisticsRecorder != null)
+					writeStatisticsRecorder.reset();
 				try {
-					printStreamHandler.createRestoreStatement(new Statement() {
-						@Override
-						public void evaluate() throws Throwable {
-							printStreamHandler.replaceCurrentStreamWithOutputStream(muteableLogStream);
-							base.evaluate();
-						}
-					}).evaluate();
+					createCaptureStatement(
+						writeOriginalStreamInBackground(base)).evaluate();
+					completeIncompleteLinesOfLineObservers();
+					for (LineMatcher lineMatcher: lineMatchers)
+						lineMatcher.verify();
 				} catch (Throwable e) {
-					muteableLogStream.failureLog.writeTo(printStreamHandler.getStream());
+					try {
+						completeIncompleteLinesOfLineObservers();
+					} catch (Throwable ignored) {
+						//the failure of the test is reported instead
+					}
+					writeFailureLog();
 					throw e;
+				} finally {
+					if (callSiteProfiler != null)
+						printStreamHandler.getStream().print(getCallSiteReport());
+					//The log is not released, because rules around this rule
+					//may still read it. Its resources are released after it is
+					//not referenced anymore.
+					muteableLogStream.failureLog.release();
 				}
 			}
 		};
 	}
 
+	private void writeFailureLog() throws IOException {
+		PrintStream stream = printStreamHandler.getStream();
+		if (failureLogFile != null && !muteableLogStream.failureLogMuted) {
+			try {
+				writeTo(muteableLogStream.failureLog, failureLogFile);
+				stream.println("The output of the test has been written to "
+					+ failureLogFile + ".");
+				return;
+			} catch (IOException e) {
+				stream.println("Cannot write the output of the test to "
+					+ failureLogFile + ": " + e);
+			}
+		}
+		muteableLogStream.failureLog.writeTo(stream);
+	}
+
+	private Statement createCaptureStatement(final Statement base) {
+		if (separateOutputOfThreads)
+			return new Statement() {
+				@Override
+				public void evaluate() throws Throwable {
+					ThreadRoutingStream.Route route
+						= printStreamHandler.routeCurrentThreadTo(muteableLogStream);
+					muteableLogStream.originalStream
+						= printStreamHandler.getStreamOfUnroutedThreads();
+					try {
+						base.evaluate();
+					} finally {
+						printStreamHandler.removeRoute(route);
+					}
+				}
+			};
+		else
+			return printStreamHandler.createRestoreStatement(new Statement() {
+				@Override
+				public void evaluate() throws Throwable {
+					muteableLogStream.originalStream
+						= printStreamHandler.getCurrentTarget();
+					if (muteableLogStream.log instanceof CharLogBuffer
+							&& !printStreamHandler.isSharedStreamInstalled()) {
+						captureChars(base);
+						return;
+					}
+					if (captureWithoutContention)
+						printStreamHandler.replaceCurrentStreamWithConcurrentOutputStream(
+							muteableLogStream);
+					else
+						printStreamHandler.replaceCurrentStreamWithOutputStream(muteableLogStream);
+					base.evaluate();
+				}
+			});
+	}
+
+	private Statement writeOriginalStreamInBackground(final Statement base) {
+		if (!writeOriginalStreamInBackground
+				|| muteableLogStream.originalStreamMuted)
+			return base;
+		else
+			return new Statement() {
+				@Override
+				public void evaluate() throws Throwable {
+					OutputStream originalStream
+						= muteableLogStream.originalStream;
+					AsynchronousStream stream = new AsynchronousStream(
+						originalStream,
+						"Background writer of "
+							+ printStreamHandler.getNameOfStream());
+					muteableLogStream.originalStream = stream;
+					try {
+						base.evaluate();
+					} finally {
+						stream.finish();
+						muteableLogStream.originalStream = originalStream;
+					}
+				}
+			};
+	}
+
+	private void captureChars(Statement base) throws Throwable {
+		CharLogBuffer log = (CharLogBuffer) muteableLogStream.log;
+		muteableLogStream.logReceivesChars = true;
+		try {
+			printStreamHandler.replaceCurrentStreamWithPrintStream(
+				new CharCapturingPrintStream(muteableLogStream, log));
+			base.evaluate();
+		} finally {
+			muteableLogStream.logReceivesChars = false;
+		}
+	}
+
 	public void clearLog() {
 		muteableLogStream.log.reset();
+		logDecoder.reset();
+		lineIndex.reset();
+		if (lineEventRecorder != null)
+			lineEventRecorder.reset();
 	}
 
 	public void enableLog() {
@@ -53,23 +188,293 @@ public class LogPrintStream {
 		 * other streams receive input that is encoded with the default
 		 * encoding.
 		 */
+		LogBuffer log = muteableLogStream.log;
+		if (log instanceof CharLogBuffer)
+			return ((CharLogBuffer) log).getText();
 		String encoding = getProperty("file.encoding");
-		try {
-			return muteableLogStream.log.toString(encoding);
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
-		}
+		return logDecoder.getText(log, encoding);
+	}
+
+	/**
+	 * Returns a view of the log. Its length grows when text is written. Its
+	 * chars are neither copied nor locked when they are read. New bytes are
+	 * decoded by {@link CharSequence#length()}. A limited log of
+	 * {@link #keepLast(int)} drops its oldest bytes. Therefore it is
+	 * returned as a {@code String}, i.e. as a snapshot.
+	 */
+	public CharSequence getLogAsCharSequence() {
+		LogBuffer log = muteableLogStream.log;
+		if (log instanceof CharLogBuffer)
+			return ((CharLogBuffer) log).getChars();
+		else if (log instanceof RingBuffer)
+			return getLog();
+		else
+			return new DecodedLog();
 	}
 
 	public String getLogWithNormalizedLineSeparator() {
+		LogBuffer log = muteableLogStream.log;
 		String lineSeparator = getProperty("line.separator");
-		return getLog().replace(lineSeparator, "\n");
+		if (log instanceof CharLogBuffer)
+			return ((CharLogBuffer) log).getText().replace(lineSeparator, "\n");
+		String encoding = getProperty("file.encoding");
+		return logDecoder.getTextWithNormalizedLineSeparator(
+			log, encoding, lineSeparator);
+	}
+
+	public int getLineCount() {
+		return lineIndex.getLineCount(muteableLogStream.log);
+	}
+
+	public String getLine(int index) {
+		return lineIndex.getLine(
+			muteableLogStream.log, index, getProperty("file.encoding"));
+	}
+
+	public List<String> getLines(int from, int to) {
+		return lineIndex.getLines(
+			muteableLogStream.log, from, to, getProperty("file.encoding"));
+	}
+
+	public Iterable<String> lines() {
+		return lineIndex.lines(
+			muteableLogStream.log, getProperty("file.encoding"));
 	}
 
 	public byte[] getLogAsBytes() {
 		return muteableLogStream.log.toByteArray();
 	}
 
+	public void writeLogTo(WritableByteChannel channel) throws IOException {
+		muteableLogStream.log.writeTo(channel);
+	}
+
+	public void writeLogTo(File file) throws IOException {
+		writeTo(muteableLogStream.log, file);
+	}
+
+	public void assertLogMatchesFile(File file) throws IOException {
+		if (updateGoldenFiles)
+			writeLogTo(file);
+		else
+			new GoldenFile(file, getProperty("file.encoding")).assertMatches(
+				muteableLogStream.log, printStreamHandler.getNameOfStream());
+	}
+
+	public void updateGoldenFiles() {
+		updateGoldenFiles = true;
+	}
+
+	public void writeFailureLogTo(File file) {
+		failureLogFile = file;
+	}
+
+	private static void writeTo(LogBuffer buffer, File file)
+			throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			buffer.writeTo(stream.getChannel());
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void separateOutputOfThreads() {
+		if (captureWithoutContention)
+			throw new IllegalStateException("The output is already captured"
+				+ " by captureWithoutContention(), therefore"
+				+ " separateOutputOfParallelTests() cannot be used, too.");
+		separateOutputOfThreads = true;
+	}
+
+	public void failOnLineMatching(String regex) {
+		addLineMatcher(LineMatcher.failOnLineMatching(regex));
+	}
+
+	public void expectWithin(int numberOfLines, String regex) {
+		addLineMatcher(LineMatcher.expectWithin(numberOfLines, regex));
+	}
+
+	public void recordLineEvents() {
+		if (lineEventRecorder == null) {
+			lineEventRecorder = new LineEventRecorder();
+			muteableLogStream.observers.add(lineEventRecorder);
+		}
+	}
+
+	public LineEventLog getLineEvents() {
+		if (lineEventRecorder == null)
+			throw new IllegalStateException(
+				"Line events are not recorded. Please call recordLineEvents()"
+				+ " when you create the rule.");
+		return lineEventRecorder.getEvents();
+	}
+
+	public void profileCallSites(int samplingInterval) {
+		CallSiteProfiler profiler = new CallSiteProfiler(samplingInterval);
+		if (callSiteProfiler != null)
+			muteableLogStream.observers.remove(callSiteProfiler);
+		callSiteProfiler = profiler;
+		muteableLogStream.observers.add(profiler);
+	}
+
+	public String getCallSiteReport() {
+		if (callSiteProfiler == null)
+			throw new IllegalStateException(
+				"Call sites are not profiled. Please call profileCallSites(int)"
+				+ " when you create the rule.");
+		return callSiteProfiler.getReport(printStreamHandler.getNameOfStream());
+	}
+
+	public void recordWriteStatistics() {
+		if (writeStatisticsRecorder == null) {
+			writeStatisticsRecorder = new WriteStatisticsRecorder();
+			muteableLogStream.observers.add(writeStatisticsRecorder);
+		}
+	}
+
+	public WriteStatistics getWriteStatistics() {
+		if (writeStatisticsRecorder == null)
+			throw new IllegalStateException(
+				"Write statistics are not recorded. Please call recordStats()"
+				+ " when you create the rule.");
+		return writeStatisticsRecorder.getStatistics();
+	}
+
+	/**
+	 * Adds an observer that receives every write. Nothing is stored by the
+	 * {@code LogPrintStream} for this observer. The observer is called by
+	 * the writing threads without locking, therefore it must be
+	 * thread-safe.
+	 */
+	public void addObserver(OutputStream observer) {
+		muteableLogStream.observers.add(observer);
+	}
+
+	/**
+	 * Adds an observer that receives every completed line. The output of
+	 * each thread is split into lines separately. Only the current line of
+	 * each thread is stored. The observer is called by the writing threads
+	 * without locking, therefore it must be thread-safe. Lines that have
+	 * not been completed when the test is finished are passed to the
+	 * observer by the test's thread.
+	 */
+	public void addLineObserver(final LineObserver observer) {
+		ThreadLineSplitter lineSplitter = new ThreadLineSplitter() {
+			@Override
+			void lineCompleted(byte[] line, int length) {
+				observer.lineCompleted(LineSplitter.decode(line, 0, length));
+			}
+		};
+		lineObservers.add(lineSplitter);
+		addObserver(lineSplitter);
+	}
+
+	private void completeIncompleteLinesOfLineObservers() throws IOException {
+		for (ThreadLineSplitter lineObserver: lineObservers)
+			lineObserver.completeIncompleteLines();
+	}
+
+	private void addLineMatcher(LineMatcher lineMatcher) {
+		lineMatchers.add(lineMatcher);
+		muteableLogStream.observers.add(lineMatcher);
+	}
+
+	public void keepLast(int numberOfBytes) {
+		checkStorageOfLog("keepLast(int)", true);
+		setStorageOfLogs("keepLast(int)",
+			new RingBuffer(numberOfBytes), new RingBuffer(numberOfBytes));
+	}
+
+	public void spillToDiskAbove(long numberOfBytes) {
+		checkStorageOfLog("spillToDiskAbove(long)", true);
+		setStorageOfLogs("spillToDiskAbove(long)",
+			new SpillingBuffer(numberOfBytes), new SpillingBuffer(numberOfBytes));
+	}
+
+	public void storeLogOffHeap() {
+		checkStorageOfLog("storeLogOffHeap()", true);
+		setStorageOfLogs("storeLogOffHeap()",
+			new DirectBuffer(), new DirectBuffer());
+	}
+
+	public void captureWithoutContention() {
+		checkStorageOfLog("captureWithoutContention()", true);
+		//the stream that routes the output of the threads locks
+		if (separateOutputOfThreads)
+			throw new IllegalStateException("The output is already captured"
+				+ " by separateOutputOfParallelTests(), therefore"
+				+ " captureWithoutContention() cannot be used, too.");
+		captureWithoutContention = true;
+		setStorageOfLogs("captureWithoutContention()",
+			new StripedBuffer(), new StripedBuffer());
+	}
+
+	private void setStorageOfLogs(
+			String method, LogBuffer log, LogBuffer failureLog) {
+		muteableLogStream.log = log;
+		logDecoder.reset();
+		lineIndex.reset();
+		muteableLogStream.failureLog = failureLog;
+		storageOfLog = method;
+		storageOfLogIncludesFailureLog = true;
+	}
+
+	/**
+	 * Throws an {@code IllegalStateException} if the storage of the log has
+	 * already been chosen by another method. A method may be called again,
+	 * e.g. for changing the number of bytes of {@link #keepLast(int)}.
+	 */
+	private void checkStorageOfLog(
+			String method, boolean includesFailureLog) {
+		if (storageOfLog != null && !storageOfLog.equals(method))
+			throw new IllegalStateException("The log is already stored by "
+				+ storageOfLog + ", therefore " + method
+				+ " cannot be used, too.");
+		if (includesFailureLog && failureLogCompressed)
+			throw new IllegalStateException("The failure log is already"
+				+ " compressed by compressFailureLog(), therefore " + method
+				+ " cannot be used, too.");
+	}
+
+	/**
+	 * Stores the log as chars. Text that is printed is appended to the log
+	 * without encoding it and {@link #getLog()} doesn't have to decode it.
+	 * The log is only encoded if its bytes are requested.
+	 */
+	public void captureChars() {
+		checkStorageOfLog("captureChars()", false);
+		muteableLogStream.log = new CharLogBuffer(Charset.defaultCharset());
+		logDecoder.reset();
+		lineIndex.reset();
+		storageOfLog = "captureChars()";
+	}
+
+	public long getNumberOfDroppedBytes() {
+		return muteableLogStream.log.getNumberOfDroppedBytes();
+	}
+
+	public InputStream getLogAsInputStream() {
+		return muteableLogStream.log.newInputStream();
+	}
+
+	public void compressFailureLog() {
+		if (storageOfLogIncludesFailureLog)
+			throw new IllegalStateException("The failure log is already"
+				+ " stored by " + storageOfLog + ", therefore"
+				+ " compressFailureLog() cannot be used, too.");
+		muteableLogStream.failureLog = new CompressedBuffer();
+		failureLogCompressed = true;
+	}
+
+	/**
+	 * Writes to the original stream in the background. The output of the
+	 * test is drained when the test is finished.
+	 */
+	public void writeOriginalStreamInBackground() {
+		writeOriginalStreamInBackground = true;
+	}
+
 	public void mute() {
 		muteableLogStream.originalStreamMuted = true;
 	}
@@ -80,12 +485,17 @@ public class LogPrintStream {
 	}
 
 	private static class MuteableLogStream extends OutputStream {
-		final OutputStream originalStream;
-		final ByteArrayOutputStream failureLog = new ByteArrayOutputStream();
-		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		volatile OutputStream originalStream;
+		volatile LogBuffer failureLog = new SegmentedBuffer();
+		volatile LogBuffer log = new SegmentedBuffer();
+		final List<OutputStream> observers
+			= new CopyOnWriteArrayList<OutputStream>();
 		boolean originalStreamMuted = false;
 		boolean failureLogMuted = true;
 		boolean logMuted = true;
+		//set while the log receives text directly from a
+		//CharCapturingPrintStream
+		volatile boolean logReceivesChars = false;
 
 		MuteableLogStream(OutputStream originalStream) {
 			this.originalStream = originalStream;
@@ -97,20 +507,160 @@ public class LogPrintStream {
 				originalStream.write(b);
 			if (!failureLogMuted)
 				failureLog.write(b);
-			if (!logMuted)
+			if (!logMuted && !logReceivesChars)
 				log.write(b);
+			//PrintStream.write(int) calls this method for every byte.
+			//Therefore no iterator is created if there are no observers.
+			if (!observers.isEmpty())
+				writeToObservers(b);
+		}
+
+		private void writeToObservers(int b) throws IOException {
+			//every observer is thread-safe by itself
+			Throwable failure = null;
+			for (OutputStream observer: observers)
+				try {
+					observer.write(b);
+				} catch (Throwable e) {
+					failure = failure == null ? e : failure;
+				}
+			throwFailureOfObserver(failure);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (!originalStreamMuted)
+				originalStream.write(b, off, len);
+			if (!failureLogMuted)
+				failureLog.write(b, off, len);
+			if (!logMuted && !logReceivesChars)
+				log.write(b, off, len);
+			Throwable failure = null;
+			for (OutputStream observer: observers)
+				try {
+					observer.write(b, off, len);
+				} catch (Throwable e) {
+					failure = failure == null ? e : failure;
+				}
+			throwFailureOfObserver(failure);
+		}
+
+		/**
+		 * Every observer receives the bytes even if another observer fails,
+		 * e.g. a {@link LineMatcher} that throws an {@code AssertionError} to
+		 * the writing thread. The first failure is thrown afterwards.
+		 */
+		private static void throwFailureOfObserver(Throwable failure)
+				throws IOException {
+			if (failure == null)
+				return;
+			else if (failure instanceof IOException)
+				throw (IOException) failure;
+			else if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			else if (failure instanceof Error)
+				throw (Error) failure;
+			else
+				throw (IOException) new IOException(
+					"An observer of the stream failed.").initCause(failure);
+		}
+
+		/**
+		 * Returns whether any receiver other than the log needs the bytes.
+		 */
+		boolean needsBytes() {
+			return !originalStreamMuted || !failureLogMuted
+				|| !observers.isEmpty();
 		}
 
 		@Override
 		public void flush() throws IOException {
+			Throwable failure = null;
+			for (OutputStream observer: observers)
+				try {
+					observer.flush();
+				} catch (Throwable e) {
+					failure = failure == null ? e : failure;
+				}
 			originalStream.flush();
-			//ByteArrayOutputStreams don't have to be closed
+			throwFailureOfObserver(failure);
+			//LogBuffers don't have to be flushed
 		}
 
 		@Override
 		public void close() throws IOException {
 			originalStream.close();
-			//ByteArrayOutputStreams don't have to be closed
+			//LogBuffers don't have to be closed
+		}
+	}
+
+	/**
+	 * A {@code PrintStream} that appends text to a {@link CharLogBuffer}
+	 * without encoding it. The text is only encoded if the
+	 * {@code MuteableLogStream} needs the bytes for other receivers. Bytes
+	 * that are written to the stream are passed to both.
+	 */
+	private static class CharCapturingPrintStream
+			extends ConcurrentPrintStream {
+		private final MuteableLogStream muteableLogStream;
+		private final CharLogBuffer log;
+
+		CharCapturingPrintStream(
+				MuteableLogStream muteableLogStream, CharLogBuffer log)
+				throws UnsupportedEncodingException {
+			super(muteableLogStream, true, Charset.defaultCharset().name());
+			this.muteableLogStream = muteableLogStream;
+			this.log = log;
+		}
+
+		@Override
+		public void write(int b) {
+			if (!muteableLogStream.logMuted)
+				log.write(b);
+			super.write(b);
+		}
+
+		@Override
+		public void write(byte[] buf, int off, int len) {
+			if (!muteableLogStream.logMuted)
+				log.write(buf, off, len);
+			super.write(buf, off, len);
+		}
+
+		@Override
+		void write(String s) {
+			if (!muteableLogStream.logMuted)
+				log.append(s);
+			if (muteableLogStream.needsBytes()) {
+				//the bytes must not be written to the log again
+				byte[] bytes = encode(s);
+				super.write(bytes, 0, bytes.length);
+			}
+		}
+	}
+
+	/**
+	 * A view of the decoded log. {@link #length()} decodes the bytes that
+	 * have been written since its last call. The other methods only access
+	 * chars that have already been decoded and don't lock the decoder.
+	 */
+	private class DecodedLog implements CharSequence {
+		public int length() {
+			return logDecoder.getLengthOfDecodedText(
+				muteableLogStream.log, getProperty("file.encoding"));
+		}
+
+		public char charAt(int index) {
+			return logDecoder.getDecodedText().charAt(index);
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return logDecoder.getDecodedText().subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length()).toString();
 		}
 	}
 }
@@ -0,0 +1,117 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link SegmentedBuffer} that stores the bytes in a temporary file. The
+ * segments are memory-mapped regions of this file. The file is created when
+ * the first byte is written and deleted by {@link #release()} or after the
+ * buffer is not referenced anymore.
+ */
+class MappedFileBuffer extends SegmentedBuffer {
+	private static final int REGION_SIZE = 16 * 1024 * 1024;
+	private TemporaryFile file;
+	private ResourceReleaser.Registration registrationOfFile;
+	private long sizeOfMappedRegions = 0;
+
+	@Override
+	int capacityOfNextSegment(ByteBuffer previousSegment) {
+		return REGION_SIZE;
+	}
+
+	@Override
+	ByteBuffer allocateSegment(int capacity) {
+		try {
+			if (file == null)
+				createFile();
+			ByteBuffer region = file.randomAccessFile.getChannel().map(
+				READ_WRITE, sizeOfMappedRegions, capacity);
+			sizeOfMappedRegions += capacity;
+			return region;
+		} catch (IOException e) {
+			throw new IllegalStateException(
+				"Cannot extend the file " + file + " that stores the log.", e);
+		}
+	}
+
+	private void createFile() throws IOException {
+		file = new TemporaryFile();
+		registrationOfFile = ResourceReleaser.releaseWhenUnreachable(this, file);
+	}
+
+	/**
+	 * Transfers the bytes from the file to the channel. Depending on the
+	 * operating system the bytes are not copied to the JVM at all.
+	 *
+	 * @param channel the channel that receives the bytes.
+	 * @throws IOException if the file cannot be read or the channel throws
+	 * an exception.
+	 */
+	@Override
+	synchronized void writeTo(WritableByteChannel channel)
+			throws IOException {
+		if (file == null)
+			return;
+		FileChannel fileChannel = file.randomAccessFile.getChannel();
+		long position = 0;
+		long size = size();
+		while (position < size)
+			position += fileChannel.transferTo(
+				position, size - position, channel);
+	}
+
+	@Override
+	synchronized void reset() {
+		super.reset();
+		sizeOfMappedRegions = 0;
+	}
+
+	@Override
+	synchronized void release() {
+		reset();
+		if (file != null) {
+			registrationOfFile.release();
+			file = null;
+			registrationOfFile = null;
+		}
+	}
+
+	/**
+	 * The file of a buffer. It does not reference the buffer, therefore it
+	 * can be deleted after the buffer is not referenced anymore.
+	 */
+	private static class TemporaryFile implements Runnable {
+		final File file;
+		final RandomAccessFile randomAccessFile;
+
+		TemporaryFile() throws IOException {
+			file = File.createTempFile("system-rules-", ".log");
+			//the file is deleted by run() unless the JVM stops before
+			file.deleteOnExit();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+		}
+
+		public void run() {
+			try {
+				randomAccessFile.close();
+			} catch (IOException ignored) {
+				//the file is deleted anyway
+			}
+			//Some operating systems don't delete files that are still mapped.
+			//They are deleted on exit.
+			file.delete();
+		}
+
+		@Override
+		public String toString() {
+			return file.toString();
+		}
+	}
+}
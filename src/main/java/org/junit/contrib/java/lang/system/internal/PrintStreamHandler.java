@@ -23,6 +23,11 @@ public enum PrintStreamHandler {
 		void replaceCurrentStreamWithPrintStream(PrintStream stream) {
 			setOut(stream);
 		}
+
+		@Override
+		String getNameOfStream() {
+			return "System.out";
+		}
 	},
 	SYSTEM_ERR {
 		@Override
@@ -34,20 +39,30 @@ public enum PrintStreamHandler {
 		void replaceCurrentStreamWithPrintStream(PrintStream stream) {
 			setErr(stream);
 		}
+
+		@Override
+		String getNameOfStream() {
+			return "System.err";
+		}
 	};
 
 	private static final boolean AUTO_FLUSH = true;
 	private static final String DEFAULT_ENCODING = Charset.defaultCharset().name();
 
+	private ThreadRoutingStream routingStream;
+	private int numberOfRoutes = 0;
+	private volatile SharedStream sharedStream;
+	private int numberOfInstallations = 0;
+
 	Statement createRestoreStatement(final Statement base) {
 		return new Statement() {
 			@Override
 			public void evaluate() throws Throwable {
-				PrintStream originalStream = getStream();
+				OutputStream originalTarget = getCurrentTarget();
 				try {
 					base.evaluate();
 				} finally {
-					replaceCurrentStreamWithPrintStream(originalStream);
+					restoreTarget(originalTarget);
 				}
 			}
 		};
@@ -55,12 +70,163 @@ public enum PrintStreamHandler {
 
 	void replaceCurrentStreamWithOutputStream(OutputStream outputStream)
 			throws UnsupportedEncodingException {
-		PrintStream printStream = new PrintStream(
-			outputStream, AUTO_FLUSH, DEFAULT_ENCODING);
-		replaceCurrentStreamWithPrintStream(printStream);
+		SharedStream stream = installedSharedStream();
+		if (stream == null) {
+			PrintStream printStream = new ExplicitFlush.MarkingPrintStream(
+				outputStream, AUTO_FLUSH, DEFAULT_ENCODING);
+			replaceCurrentStreamWithPrintStream(printStream);
+		} else
+			stream.target = outputStream;
+	}
+
+	/**
+	 * Replaces the current stream with a {@code PrintStream} that does not
+	 * lock. The output stream must be thread-safe. A shared stream is not
+	 * replaced. Only its target is replaced.
+	 *
+	 * @param outputStream the thread-safe stream that receives the bytes.
+	 * @see ConcurrentPrintStream
+	 */
+	void replaceCurrentStreamWithConcurrentOutputStream(
+			OutputStream outputStream) throws UnsupportedEncodingException {
+		SharedStream stream = installedSharedStream();
+		if (stream == null) {
+			PrintStream printStream = new ConcurrentPrintStream(
+				outputStream, AUTO_FLUSH, DEFAULT_ENCODING);
+			replaceCurrentStreamWithPrintStream(printStream);
+		} else
+			stream.target = outputStream;
+	}
+
+	/**
+	 * Returns the stream that receives the bytes that are written to the
+	 * current stream. This is the current stream itself unless a shared
+	 * stream is installed.
+	 *
+	 * @return the stream that receives the bytes of the current stream.
+	 */
+	OutputStream getCurrentTarget() {
+		SharedStream stream = installedSharedStream();
+		return stream == null ? getStream() : stream.target;
+	}
+
+	private void restoreTarget(OutputStream target) {
+		SharedStream stream = installedSharedStream();
+		if (stream != null)
+			stream.target = target;
+		else if (target instanceof PrintStream)
+			replaceCurrentStreamWithPrintStream((PrintStream) target);
+		//otherwise the target has been set while a shared stream has been
+		//installed. This stream has already been replaced by the original
+		//stream when it has been uninstalled.
+	}
+
+	/**
+	 * Replaces the current stream with a stream that is kept until
+	 * {@link #uninstallSharedStream()} is called. Rules that are executed
+	 * in the meantime don't replace the stream anymore. They only replace
+	 * the shared stream's target. Therefore rules that install their own
+	 * {@code PrintStream} (for capturing without contention or for capturing
+	 * chars) write to the shared stream instead.
+	 */
+	public synchronized void installSharedStream()
+			throws UnsupportedEncodingException {
+		if (numberOfInstallations == 0) {
+			sharedStream = new SharedStream(
+				getStream(), AUTO_FLUSH, DEFAULT_ENCODING);
+			replaceCurrentStreamWithPrintStream(sharedStream.printStream);
+		}
+		++numberOfInstallations;
+	}
+
+	/**
+	 * Uninstalls the shared stream when it has been installed as often as it
+	 * has been uninstalled.
+	 *
+	 * @throws IllegalStateException if the shared stream is not installed.
+	 */
+	public synchronized void uninstallSharedStream() {
+		if (numberOfInstallations == 0)
+			throw new IllegalStateException("The shared stream of "
+				+ getNameOfStream() + " is not installed. Please call"
+				+ " installSharedStream() first.");
+		--numberOfInstallations;
+		if (numberOfInstallations == 0) {
+			sharedStream.printStream.flush();
+			if (getStream() == sharedStream.printStream)
+				replaceCurrentStreamWithPrintStream(
+					sharedStream.replacedStream);
+			sharedStream = null;
+		}
+	}
+
+	/**
+	 * Returns whether the current stream is a shared stream. A shared stream
+	 * must not be replaced by a rule.
+	 *
+	 * @return whether the current stream is a shared stream.
+	 */
+	boolean isSharedStreamInstalled() {
+		return installedSharedStream() != null;
+	}
+
+	private SharedStream installedSharedStream() {
+		SharedStream stream = sharedStream;
+		//the shared stream may have been replaced by System.setOut.
+		if (stream != null && getStream() == stream.printStream)
+			return stream;
+		else
+			return null;
+	}
+
+	/**
+	 * Routes everything that is written by the current thread and by the
+	 * threads that it starts to the specified stream. The stream is not
+	 * replaced for other threads. This allows tests to capture their output
+	 * while other tests are executed in parallel.
+	 *
+	 * @param outputStream the stream that receives the output of the current
+	 *                     thread.
+	 * @return the route that has to be passed to
+	 * {@link #removeRoute(ThreadRoutingStream.Route)} after the test.
+	 */
+	synchronized ThreadRoutingStream.Route routeCurrentThreadTo(
+			OutputStream outputStream) throws UnsupportedEncodingException {
+		if (numberOfRoutes == 0) {
+			routingStream = new ThreadRoutingStream(getCurrentTarget());
+			replaceCurrentStreamWithOutputStream(routingStream);
+		}
+		++numberOfRoutes;
+		return routingStream.routeCurrentThreadTo(outputStream);
+	}
+
+	synchronized void removeRoute(ThreadRoutingStream.Route route) {
+		routingStream.removeRoute(route);
+		--numberOfRoutes;
+		if (numberOfRoutes == 0) {
+			restoreTarget(routingStream.getDefaultStream());
+			routingStream = null;
+		}
+	}
+
+	/**
+	 * Returns the stream that has been used before
+	 * {@link #routeCurrentThreadTo(OutputStream)} has been called the first
+	 * time or the current target if no thread is routed.
+	 *
+	 * @return the stream that receives the output of threads that are not
+	 * routed.
+	 */
+	synchronized OutputStream getStreamOfUnroutedThreads() {
+		if (routingStream == null)
+			return getCurrentTarget();
+		else
+			return routingStream.getDefaultStream();
 	}
 
 	abstract PrintStream getStream();
 
 	abstract void replaceCurrentStreamWithPrintStream(PrintStream stream);
+
+	abstract String getNameOfStream();
 }
@@ -0,0 +1,80 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Releases resources other than memory (e.g. files) of objects that are not
+ * referenced anymore. A log that holds such resources cannot release them
+ * at the end of the test, because rules around the rule of the log may still
+ * read it. It registers its resources instead and they are released after
+ * the garbage collector has found out that nobody can read the log anymore.
+ *
+ * <p>The resources are released by a daemon thread. An owner that releases
+ * its resources earlier calls {@link Registration#release()} itself.
+ */
+class ResourceReleaser {
+	private static final ReferenceQueue<Object> QUEUE
+		= new ReferenceQueue<Object>();
+	//the references are only enqueued if they are still referenced
+	private static final Set<Registration> REGISTRATIONS
+		= Collections.synchronizedSet(new HashSet<Registration>());
+	private static Thread releasingThread;
+
+	/**
+	 * Registers resources that are released when their owner is not
+	 * referenced anymore. The release must not reference the owner.
+	 *
+	 * @param owner the object that holds the resources.
+	 * @param release releases the resources.
+	 * @return the registration that releases the resources earlier.
+	 */
+	static Registration releaseWhenUnreachable(Object owner, Runnable release) {
+		startReleasingThread();
+		Registration registration = new Registration(owner, release);
+		REGISTRATIONS.add(registration);
+		return registration;
+	}
+
+	private static synchronized void startReleasingThread() {
+		if (releasingThread != null)
+			return;
+		releasingThread = new Thread("Releaser of System Rules' logs") {
+			@Override
+			public void run() {
+				while (true)
+					try {
+						((Registration) QUEUE.remove()).release();
+					} catch (InterruptedException ignored) {
+						//the thread is a daemon and never stops
+					}
+			}
+		};
+		releasingThread.setDaemon(true);
+		releasingThread.start();
+	}
+
+	static class Registration extends PhantomReference<Object> {
+		private final Runnable release;
+		private boolean released = false;
+
+		private Registration(Object owner, Runnable release) {
+			super(owner, QUEUE);
+			this.release = release;
+		}
+
+		/**
+		 * Releases the resources unless they have been released before.
+		 */
+		synchronized void release() {
+			if (released)
+				return;
+			released = true;
+			REGISTRATIONS.remove(this);
+			release.run();
+		}
+	}
+}
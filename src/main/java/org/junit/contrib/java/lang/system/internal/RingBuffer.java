@@ -0,0 +1,111 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Collections.singletonList;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A buffer that stores only the last bytes that have been written to it. Older
+ * bytes are overwritten. The buffer's array grows until it reaches the
+ * capacity. Therefore a buffer with a large capacity does not use much memory
+ * if only a few bytes are written to it.
+ *
+ * <p>The buffer is thread-safe.
+ */
+class RingBuffer extends LogBuffer {
+	private static final int INITIAL_SIZE = 256;
+	private final int capacity;
+	private byte[] ring = new byte[0];
+	private int position = 0;
+	private long numberOfWrittenBytes = 0;
+
+	RingBuffer(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"The capacity must be positive but is " + capacity + ".");
+		this.capacity = capacity;
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		ensureCapacityForAdditionalBytes(1);
+		ring[position] = (byte) b;
+		position = (position + 1) % ring.length;
+		++numberOfWrittenBytes;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		if (len == 0)
+			return;
+		else if (len >= capacity) {
+			ensureCapacityForAdditionalBytes(capacity);
+			System.arraycopy(b, off + len - capacity, ring, 0, capacity);
+			position = 0;
+		} else {
+			ensureCapacityForAdditionalBytes(len);
+			int lengthOfFirstChunk = min(len, ring.length - position);
+			System.arraycopy(b, off, ring, position, lengthOfFirstChunk);
+			System.arraycopy(b, off + lengthOfFirstChunk, ring, 0,
+				len - lengthOfFirstChunk);
+			position = (position + len) % ring.length;
+		}
+		numberOfWrittenBytes += len;
+	}
+
+	private void ensureCapacityForAdditionalBytes(int length) {
+		//the ring only grows as long as it has not been filled completely.
+		//Therefore all bytes are stored at the beginning of the ring.
+		if (numberOfWrittenBytes + length > ring.length
+				&& ring.length < capacity) {
+			int numberOfStoredBytes = (int) numberOfWrittenBytes;
+			int newLength = (int) min(
+				max(max(INITIAL_SIZE, 2L * ring.length),
+					numberOfWrittenBytes + length),
+				capacity);
+			byte[] newRing = new byte[newLength];
+			System.arraycopy(ring, 0, newRing, 0, numberOfStoredBytes);
+			ring = newRing;
+			position = numberOfStoredBytes;
+		}
+	}
+
+	@Override
+	synchronized long size() {
+		return min(numberOfWrittenBytes, capacity);
+	}
+
+	@Override
+	synchronized long getNumberOfDroppedBytes() {
+		return numberOfWrittenBytes - size();
+	}
+
+	@Override
+	synchronized void reset() {
+		ring = new byte[0];
+		position = 0;
+		numberOfWrittenBytes = 0;
+	}
+
+	/**
+	 * Returns a copy of the stored bytes because the ring's bytes are
+	 * overwritten by subsequent writes.
+	 *
+	 * @return a single read-only segment with a copy of the stored bytes.
+	 */
+	@Override
+	synchronized List<ByteBuffer> getSegments() {
+		byte[] copy = new byte[(int) size()];
+		if (numberOfWrittenBytes <= ring.length)
+			System.arraycopy(ring, 0, copy, 0, copy.length);
+		else {
+			int lengthOfOldestChunk = ring.length - position;
+			System.arraycopy(ring, position, copy, 0, lengthOfOldestChunk);
+			System.arraycopy(ring, 0, copy, lengthOfOldestChunk, position);
+		}
+		return singletonList(ByteBuffer.wrap(copy).asReadOnlyBuffer());
+	}
+}
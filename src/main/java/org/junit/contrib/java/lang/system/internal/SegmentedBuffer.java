@@ -0,0 +1,119 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.min;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@code OutputStream} that stores the written bytes in a list of
+ * segments. In contrast to a {@code ByteArrayOutputStream} it never copies the
+ * existing data when it grows. It just adds another segment. Subclasses may
+ * provide segments that are not stored on the heap.
+ *
+ * <p>The buffer is thread-safe. Writers lock the buffer, readers don't. The
+ * size of the buffer is published by a volatile field after the bytes have
+ * been written and bytes below this size are never modified. A reader reads
+ * the size and the segments and only provides the bytes below the size.
+ * Therefore a reader does not block writers and never sees bytes of a write
+ * that has not been finished.
+ */
+class SegmentedBuffer extends LogBuffer {
+	private static final int FIRST_SEGMENT_SIZE = 256;
+	private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+	private static final ByteBuffer[] NO_SEGMENTS = new ByteBuffer[0];
+	//the array is replaced when a segment is added
+	private volatile ByteBuffer[] segments = NO_SEGMENTS;
+	private ByteBuffer currentSegment;
+	private volatile long size = 0;
+
+	@Override
+	public synchronized void write(int b) {
+		ensureCurrentSegmentHasRemainingCapacity();
+		currentSegment.put((byte) b);
+		size = size + 1;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		int remaining = len;
+		while (remaining > 0) {
+			ensureCurrentSegmentHasRemainingCapacity();
+			int lengthOfChunk = min(remaining, currentSegment.remaining());
+			currentSegment.put(b, off + len - remaining, lengthOfChunk);
+			remaining -= lengthOfChunk;
+		}
+		size = size + len;
+	}
+
+	private void ensureCurrentSegmentHasRemainingCapacity() {
+		if (currentSegment == null || !currentSegment.hasRemaining()) {
+			currentSegment = allocateSegment(
+				capacityOfNextSegment(currentSegment));
+			ByteBuffer[] newSegments = new ByteBuffer[segments.length + 1];
+			System.arraycopy(segments, 0, newSegments, 0, segments.length);
+			newSegments[segments.length] = currentSegment;
+			segments = newSegments;
+		}
+	}
+
+	int capacityOfNextSegment(ByteBuffer previousSegment) {
+		if (previousSegment == null)
+			return FIRST_SEGMENT_SIZE;
+		else
+			return min(2 * previousSegment.capacity(), MAX_SEGMENT_SIZE);
+	}
+
+	ByteBuffer allocateSegment(int capacity) {
+		return ByteBuffer.allocate(capacity);
+	}
+
+	@Override
+	long size() {
+		return size;
+	}
+
+	@Override
+	synchronized void reset() {
+		//the size has to be reset first. A reader that sees the new
+		//segments must not see the old size.
+		size = 0;
+		segments = NO_SEGMENTS;
+		currentSegment = null;
+	}
+
+	/**
+	 * Returns read-only views of the bytes that have been written so far.
+	 * The buffer is not locked.
+	 *
+	 * @return read-only views of the stored bytes.
+	 */
+	@Override
+	List<ByteBuffer> getSegments() {
+		ByteBuffer[] segments;
+		long size;
+		do {
+			segments = this.segments;
+			size = this.size;
+			//the size belongs to other segments if a segment has been
+			//added or the buffer has been reset in the meantime
+		} while (segments != this.segments);
+		return views(segments, size);
+	}
+
+	private static List<ByteBuffer> views(ByteBuffer[] segments, long size) {
+		List<ByteBuffer> views = new ArrayList<ByteBuffer>(segments.length);
+		long remaining = size;
+		for (int i = 0; i < segments.length && remaining > 0; ++i) {
+			//all segments but the last one are full
+			ByteBuffer view = segments[i].asReadOnlyBuffer();
+			int length = (int) min(remaining, view.capacity());
+			view.clear();
+			view.limit(length);
+			views.add(view);
+			remaining -= length;
+		}
+		return views;
+	}
+}
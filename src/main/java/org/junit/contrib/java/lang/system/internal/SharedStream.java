@@ -0,0 +1,42 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * An {@code OutputStream} that forwards every write to a target that can be
+ * replaced at any time. It is wrapped by a single {@code PrintStream} that
+ * stays installed as {@code System.out} or {@code System.err} for many tests.
+ * Each test only replaces the target instead of creating a new
+ * {@code PrintStream}.
+ */
+class SharedStream extends OutputStream {
+	final PrintStream replacedStream;
+	final PrintStream printStream;
+	volatile OutputStream target;
+
+	SharedStream(PrintStream replacedStream, boolean autoFlush,
+			String encoding) throws UnsupportedEncodingException {
+		this.replacedStream = replacedStream;
+		this.target = replacedStream;
+		this.printStream = new ExplicitFlush.MarkingPrintStream(
+			this, autoFlush, encoding);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		target.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		target.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		target.flush();
+	}
+}
@@ -0,0 +1,76 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * A buffer that stores the bytes on the heap until their number exceeds a
+ * threshold. Then the bytes are moved to a {@link MappedFileBuffer} and all
+ * subsequent bytes are stored in the file, too.
+ *
+ * <p>The buffer is thread-safe.
+ */
+class SpillingBuffer extends LogBuffer {
+	private final long threshold;
+	private LogBuffer buffer = new SegmentedBuffer();
+	private boolean spilled = false;
+
+	SpillingBuffer(long threshold) {
+		if (threshold < 0)
+			throw new IllegalArgumentException(
+				"The threshold must not be negative but is " + threshold + ".");
+		this.threshold = threshold;
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		spillIfThresholdIsExceededBy(1);
+		buffer.write(b);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+			throws IOException {
+		spillIfThresholdIsExceededBy(len);
+		buffer.write(b, off, len);
+	}
+
+	private void spillIfThresholdIsExceededBy(int length) throws IOException {
+		if (!spilled && buffer.size() + length > threshold) {
+			MappedFileBuffer fileBuffer = new MappedFileBuffer();
+			buffer.writeTo(fileBuffer);
+			buffer = fileBuffer;
+			spilled = true;
+		}
+	}
+
+	@Override
+	synchronized long size() {
+		return buffer.size();
+	}
+
+	@Override
+	synchronized void reset() {
+		buffer.release();
+		buffer = new SegmentedBuffer();
+		spilled = false;
+	}
+
+	@Override
+	synchronized void release() {
+		reset();
+	}
+
+	@Override
+	synchronized List<ByteBuffer> getSegments() {
+		return buffer.getSegments();
+	}
+
+	@Override
+	synchronized void writeTo(WritableByteChannel channel)
+			throws IOException {
+		buffer.writeTo(channel);
+	}
+}
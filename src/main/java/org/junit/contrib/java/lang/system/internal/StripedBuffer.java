@@ -0,0 +1,266 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A buffer that does not block concurrent writers. Each thread writes to its
+ * own stripe. Every write gets a number from a global sequence. The stripes
+ * are merged in the order of these numbers when the buffer is read.
+ *
+ * <p>A thread only locks its own stripe while it writes to it. Therefore
+ * writers only wait for readers, but never for other writers.
+ *
+ * <p>Subsequent writes of the same thread are stored as a single record if
+ * no other thread has written in between.
+ *
+ * <p>The stripes store their records in blocks, therefore they never copy
+ * the records when they grow. A reader takes the new records of all
+ * stripes and appends them to a {@link SegmentedBuffer} with the merged
+ * records. Each record is merged only once and the stripes only keep the
+ * records that have been written since the last read. The stripes of
+ * threads that have died are removed when they are empty.
+ */
+class StripedBuffer extends LogBuffer {
+	private static final Comparator<Records> BY_SEQUENCE_OF_NEXT_RECORD
+		= new Comparator<Records>() {
+			public int compare(Records first, Records second) {
+				long firstSequence = first.sequenceOfNextRecord();
+				long secondSequence = second.sequenceOfNextRecord();
+				return firstSequence < secondSequence ? -1
+					: (firstSequence == secondSequence ? 0 : 1);
+			}
+		};
+	private final AtomicLong sequence = new AtomicLong();
+	//guarded by this
+	private final List<Stripe> stripes = new ArrayList<Stripe>();
+	private final ThreadLocal<Stripe> stripeOfCurrentThread
+		= new ThreadLocal<Stripe>() {
+			@Override
+			protected Stripe initialValue() {
+				return addStripeOfCurrentThread();
+			}
+		};
+	private final SegmentedBuffer mergedRecords = new SegmentedBuffer();
+
+	private synchronized Stripe addStripeOfCurrentThread() {
+		Stripe stripe = new Stripe(Thread.currentThread());
+		stripes.add(stripe);
+		return stripe;
+	}
+
+	@Override
+	public void write(int b) {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if (len == 0)
+			return;
+		Stripe stripe = stripeOfCurrentThread.get();
+		stripe.lock.lock();
+		try {
+			//the number is drawn while the stripe is locked. Therefore a
+			//reader that locks all stripes sees every record whose number
+			//has been drawn.
+			stripe.records.append(sequence.getAndIncrement(), b, off, len);
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	@Override
+	synchronized long size() {
+		mergeNewRecords();
+		return mergedRecords.size();
+	}
+
+	@Override
+	synchronized void reset() {
+		for (Stripe stripe: stripes) {
+			stripe.lock.lock();
+			try {
+				stripe.records = new Records();
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+		mergedRecords.reset();
+	}
+
+	/**
+	 * Returns the records of all stripes ordered by their sequence numbers.
+	 * The result is a prefix of every subsequent result.
+	 *
+	 * @return read-only views of the merged records.
+	 */
+	@Override
+	synchronized List<ByteBuffer> getSegments() {
+		mergeNewRecords();
+		return mergedRecords.getSegments();
+	}
+
+	private void mergeNewRecords() {
+		PriorityQueue<Records> newRecords = new PriorityQueue<Records>(
+			max(1, stripes.size()), BY_SEQUENCE_OF_NEXT_RECORD);
+		for (Records records: takeRecordsOfAllStripes())
+			if (records.hasNextRecord())
+				newRecords.add(records);
+		while (!newRecords.isEmpty()) {
+			Records records = newRecords.poll();
+			records.writeNextRecordTo(mergedRecords);
+			if (records.hasNextRecord())
+				newRecords.add(records);
+		}
+	}
+
+	/**
+	 * Takes the records of all stripes while all stripes are locked. No
+	 * writer can draw a number at this time, therefore the taken records
+	 * include every number that has been drawn so far. Subsequent records
+	 * have higher numbers.
+	 */
+	private List<Records> takeRecordsOfAllStripes() {
+		List<Records> takenRecords = new ArrayList<Records>(stripes.size());
+		for (Stripe stripe: stripes)
+			stripe.lock.lock();
+		try {
+			for (Iterator<Stripe> i = stripes.iterator(); i.hasNext(); ) {
+				Stripe stripe = i.next();
+				takenRecords.add(stripe.records);
+				stripe.records = new Records();
+				if (!takenRecords.get(takenRecords.size() - 1).hasNextRecord()
+						&& !stripe.thread.isAlive()) {
+					//the thread cannot write to the stripe anymore
+					stripe.lock.unlock();
+					i.remove();
+				}
+			}
+		} finally {
+			for (Stripe stripe: stripes)
+				stripe.lock.unlock();
+		}
+		return takenRecords;
+	}
+
+	private static class Stripe {
+		final Lock lock = new ReentrantLock();
+		final Thread thread;
+		//guarded by lock
+		Records records = new Records();
+
+		Stripe(Thread thread) {
+			this.thread = thread;
+		}
+	}
+
+	/**
+	 * The records of a stripe. The bytes, the numbers and the lengths of the
+	 * records are stored in blocks. A new block is added when the last block
+	 * is full.
+	 */
+	private static class Records {
+		private static final int FIRST_BLOCK_SIZE = 256;
+		private static final int MAX_BLOCK_SIZE = 64 * 1024;
+		private static final int RECORDS_PER_BLOCK = 256;
+		private final List<byte[]> blocksOfBytes = new ArrayList<byte[]>();
+		private int lengthOfLastBlockOfBytes = 0;
+		private final List<long[]> blocksOfSequences = new ArrayList<long[]>();
+		private final List<int[]> blocksOfLengths = new ArrayList<int[]>();
+		private int numberOfRecords = 0;
+		private long nextSequenceOfLastRecord = -1;
+		//the position of the reader
+		private int indexOfNextRecord = 0;
+		private int indexOfBlockOfNextByte = 0;
+		private int offsetOfNextByte = 0;
+
+		void append(long sequence, byte[] b, int off, int len) {
+			if (sequence == nextSequenceOfLastRecord)
+				blocksOfLengths.get((numberOfRecords - 1) / RECORDS_PER_BLOCK)
+					[(numberOfRecords - 1) % RECORDS_PER_BLOCK] += len;
+			else
+				addRecord(sequence, len);
+			nextSequenceOfLastRecord = sequence + 1;
+			appendBytes(b, off, len);
+		}
+
+		private void addRecord(long sequence, int length) {
+			if (numberOfRecords % RECORDS_PER_BLOCK == 0) {
+				blocksOfSequences.add(new long[RECORDS_PER_BLOCK]);
+				blocksOfLengths.add(new int[RECORDS_PER_BLOCK]);
+			}
+			int block = numberOfRecords / RECORDS_PER_BLOCK;
+			blocksOfSequences.get(block)[numberOfRecords % RECORDS_PER_BLOCK]
+				= sequence;
+			blocksOfLengths.get(block)[numberOfRecords % RECORDS_PER_BLOCK]
+				= length;
+			++numberOfRecords;
+		}
+
+		private void appendBytes(byte[] b, int off, int len) {
+			int remaining = len;
+			while (remaining > 0) {
+				byte[] lastBlock = lastBlockWithRemainingCapacity();
+				int lengthOfChunk = min(
+					remaining, lastBlock.length - lengthOfLastBlockOfBytes);
+				System.arraycopy(b, off + len - remaining,
+					lastBlock, lengthOfLastBlockOfBytes, lengthOfChunk);
+				lengthOfLastBlockOfBytes += lengthOfChunk;
+				remaining -= lengthOfChunk;
+			}
+		}
+
+		private byte[] lastBlockWithRemainingCapacity() {
+			if (blocksOfBytes.isEmpty()) {
+				blocksOfBytes.add(new byte[FIRST_BLOCK_SIZE]);
+			} else {
+				byte[] lastBlock = blocksOfBytes.get(blocksOfBytes.size() - 1);
+				if (lengthOfLastBlockOfBytes < lastBlock.length)
+					return lastBlock;
+				blocksOfBytes.add(
+					new byte[min(2 * lastBlock.length, MAX_BLOCK_SIZE)]);
+			}
+			lengthOfLastBlockOfBytes = 0;
+			return blocksOfBytes.get(blocksOfBytes.size() - 1);
+		}
+
+		boolean hasNextRecord() {
+			return indexOfNextRecord < numberOfRecords;
+		}
+
+		long sequenceOfNextRecord() {
+			return blocksOfSequences.get(indexOfNextRecord / RECORDS_PER_BLOCK)
+				[indexOfNextRecord % RECORDS_PER_BLOCK];
+		}
+
+		void writeNextRecordTo(SegmentedBuffer buffer) {
+			int remaining = blocksOfLengths.get(
+				indexOfNextRecord / RECORDS_PER_BLOCK)
+				[indexOfNextRecord % RECORDS_PER_BLOCK];
+			++indexOfNextRecord;
+			while (remaining > 0) {
+				byte[] block = blocksOfBytes.get(indexOfBlockOfNextByte);
+				int lengthOfChunk = min(
+					remaining, block.length - offsetOfNextByte);
+				buffer.write(block, offsetOfNextByte, lengthOfChunk);
+				remaining -= lengthOfChunk;
+				offsetOfNextByte += lengthOfChunk;
+				if (offsetOfNextByte == block.length) {
+					++indexOfBlockOfNextByte;
+					offsetOfNextByte = 0;
+				}
+			}
+		}
+	}
+}
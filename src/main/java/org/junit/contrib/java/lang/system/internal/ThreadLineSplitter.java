@@ -0,0 +1,69 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@code OutputStream} that splits the output of each thread into lines
+ * separately. Therefore lines of different threads that are written
+ * concurrently don't corrupt each other. Only the current line of each thread
+ * is stored. Each thread has its own {@link LineSplitter}, therefore threads
+ * don't wait for each other.
+ */
+abstract class ThreadLineSplitter extends OutputStream {
+	private final List<LineSplitter> lineSplitters
+		= new CopyOnWriteArrayList<LineSplitter>();
+	private final ThreadLocal<LineSplitter> lineSplitterOfCurrentThread
+		= new ThreadLocal<LineSplitter>() {
+			@Override
+			protected LineSplitter initialValue() {
+				LineSplitter lineSplitter = new LineSplitter() {
+					@Override
+					void lineCompleted(byte[] line, int length)
+							throws IOException {
+						ThreadLineSplitter.this.lineCompleted(line, length);
+					}
+				};
+				lineSplitters.add(lineSplitter);
+				return lineSplitter;
+			}
+		};
+
+	@Override
+	public void write(int b) throws IOException {
+		lineSplitterOfCurrentThread.get().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		lineSplitterOfCurrentThread.get().write(b, off, len);
+	}
+
+	/**
+	 * Completes the current line of every thread that has written text
+	 * after its last {@code \n}.
+	 *
+	 * @throws IOException if a line cannot be handled.
+	 */
+	void completeIncompleteLines() throws IOException {
+		for (LineSplitter lineSplitter: lineSplitters)
+			lineSplitter.completeIncompleteLine();
+	}
+
+	/**
+	 * Called by the writing thread for every line that it has completed.
+	 * Incomplete lines that are completed by
+	 * {@link #completeIncompleteLines()} are passed by the thread that calls
+	 * that method. The array is reused after this method returns. Use
+	 * {@link LineSplitter#decode(byte[], int, int)} for the text of the
+	 * line.
+	 *
+	 * @param line an array that starts with the bytes of the line. The line
+	 *             separator is not part of the line.
+	 * @param length the number of bytes of the line.
+	 * @throws IOException if the line cannot be handled.
+	 */
+	abstract void lineCompleted(byte[] line, int length) throws IOException;
+}
@@ -0,0 +1,76 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@code OutputStream} that forwards every write to the stream that has
+ * been registered for the writing thread. Threads inherit the route of the
+ * thread that created them. Writes of threads without a route are forwarded
+ * to the default stream.
+ */
+class ThreadRoutingStream extends OutputStream {
+	private final InheritableThreadLocal<Route> routes
+		= new InheritableThreadLocal<Route>();
+	private final OutputStream defaultStream;
+
+	ThreadRoutingStream(OutputStream defaultStream) {
+		this.defaultStream = defaultStream;
+	}
+
+	OutputStream getDefaultStream() {
+		return defaultStream;
+	}
+
+	Route routeCurrentThreadTo(OutputStream stream) {
+		Route route = new Route(stream, routes.get());
+		routes.set(route);
+		return route;
+	}
+
+	void removeRoute(Route route) {
+		//threads that have been started by the current thread may still
+		//use the route, therefore we have to close it.
+		route.stream = null;
+		if (route.previous == null)
+			routes.remove();
+		else
+			routes.set(route.previous);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		currentStream().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		currentStream().write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		currentStream().flush();
+	}
+
+	private OutputStream currentStream() {
+		Route route = routes.get();
+		while (route != null) {
+			OutputStream stream = route.stream;
+			if (stream != null)
+				return stream;
+			route = route.previous;
+		}
+		return defaultStream;
+	}
+
+	static class Route {
+		final Route previous;
+		volatile OutputStream stream;
+
+		Route(OutputStream stream, Route previous) {
+			this.stream = stream;
+			this.previous = previous;
+		}
+	}
+}
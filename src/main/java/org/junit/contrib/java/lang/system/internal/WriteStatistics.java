@@ -0,0 +1,43 @@
+package org.junit.contrib.java.lang.system.internal;
+
+/**
+ * The numbers of calls that have been counted by a
+ * {@link WriteStatisticsRecorder}. The statistics are immutable.
+ */
+public final class WriteStatistics {
+	private final long numberOfSingleByteWrites;
+	private final long numberOfBulkWrites;
+	private final long[] bulkWriteSizeHistogram;
+	private final long numberOfFlushes;
+	private final long numberOfBytes;
+
+	WriteStatistics(long numberOfSingleByteWrites, long numberOfBulkWrites,
+			long[] bulkWriteSizeHistogram, long numberOfFlushes,
+			long numberOfBytes) {
+		this.numberOfSingleByteWrites = numberOfSingleByteWrites;
+		this.numberOfBulkWrites = numberOfBulkWrites;
+		this.bulkWriteSizeHistogram = bulkWriteSizeHistogram;
+		this.numberOfFlushes = numberOfFlushes;
+		this.numberOfBytes = numberOfBytes;
+	}
+
+	public long getNumberOfSingleByteWrites() {
+		return numberOfSingleByteWrites;
+	}
+
+	public long getNumberOfBulkWrites() {
+		return numberOfBulkWrites;
+	}
+
+	public long[] getBulkWriteSizeHistogram() {
+		return bulkWriteSizeHistogram.clone();
+	}
+
+	public long getNumberOfFlushes() {
+		return numberOfFlushes;
+	}
+
+	public long getNumberOfBytes() {
+		return numberOfBytes;
+	}
+}
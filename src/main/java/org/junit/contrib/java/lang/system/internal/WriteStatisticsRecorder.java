@@ -0,0 +1,56 @@
+package org.junit.contrib.java.lang.system.internal;
+
+import static java.lang.Integer.numberOfLeadingZeros;
+
+import java.io.OutputStream;
+
+/**
+ * Counts the calls of a stream. Single bytes and arrays of bytes are counted
+ * separately. The sizes of the arrays are counted by a histogram with
+ * buckets for powers of two. Only flushes that have been requested
+ * explicitly are counted.
+ *
+ * @see ExplicitFlush
+ */
+class WriteStatisticsRecorder extends OutputStream {
+	private long numberOfSingleByteWrites = 0;
+	private long numberOfBulkWrites = 0;
+	private final long[] bulkWriteSizeHistogram = new long[33];
+	private long numberOfFlushes = 0;
+	private long numberOfBytes = 0;
+
+	@Override
+	public synchronized void write(int b) {
+		++numberOfSingleByteWrites;
+		++numberOfBytes;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		++numberOfBulkWrites;
+		//0 -> 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+		++bulkWriteSizeHistogram[32 - numberOfLeadingZeros(len)];
+		numberOfBytes += len;
+	}
+
+	@Override
+	public synchronized void flush() {
+		if (ExplicitFlush.isInProgress())
+			++numberOfFlushes;
+	}
+
+	synchronized void reset() {
+		numberOfSingleByteWrites = 0;
+		numberOfBulkWrites = 0;
+		for (int i = 0; i < bulkWriteSizeHistogram.length; ++i)
+			bulkWriteSizeHistogram[i] = 0;
+		numberOfFlushes = 0;
+		numberOfBytes = 0;
+	}
+
+	synchronized WriteStatistics getStatistics() {
+		return new WriteStatistics(numberOfSingleByteWrites,
+			numberOfBulkWrites, bulkWriteSizeHistogram.clone(),
+			numberOfFlushes, numberOfBytes);
+	}
+}
@@ -517,4 +517,58 @@ public class DisallowWriteToSystemErrTest {
 			assertThat(err).isSameAs(originalErr);
 		}
 	}
+
+	public static class test_is_successful_if_it_writes_within_the_budget {
+		@Rule
+		public final DisallowWriteToSystemErr disallowWrite
+			= new DisallowWriteToSystemErr().allowAtMost(100, 2);
+
+		@Test
+		public void test() {
+			System.err.println("first line");
+			System.err.println("second line");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class test_fails_with_the_line_and_the_call_site_if_the_number_of_lines_exceeds_the_budget {
+		public static class TestClass {
+			@Rule
+			public final DisallowWriteToSystemErr disallowWrite
+				= new DisallowWriteToSystemErr().allowAtMost(100, 2);
+
+			@Test
+			public void test() {
+				for (int i = 0; i < 3; ++i)
+					System.err.println("item " + i);
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage())
+				.startsWith("Tried to write more than 100 bytes or 2 lines to"
+					+ " System.err. The limit has been exceeded by the line"
+					+ " \"item 2\" that has been written by ")
+				.contains("TestClass.test(DisallowWriteToSystemErrTest.java:");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class test_fails_with_the_line_if_the_number_of_bytes_exceeds_the_budget {
+		public static class TestClass {
+			@Rule
+			public final DisallowWriteToSystemErr disallowWrite
+				= new DisallowWriteToSystemErr().allowAtMost(8, 100);
+
+			@Test
+			public void test() {
+				System.err.print("first\nsecond line\nthird line");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage())
+				.contains("exceeded by the line \"second line\"");
+		}
+	}
 }
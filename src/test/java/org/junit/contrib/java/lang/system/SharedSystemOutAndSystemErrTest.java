@@ -0,0 +1,139 @@
+package org.junit.contrib.java.lang.system;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.contrib.java.lang.system.internal.PrintStreamHandler.SYSTEM_OUT;
+import static org.junit.runner.JUnitCore.runClasses;
+
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.github.stefanbirkner.fishbowl.Statement;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class SharedSystemOutAndSystemErrTest {
+	public static class system_out_is_shared_by_the_tests_of_a_class_and_restored_afterwards {
+		private static final Set<PrintStream> USED_STREAMS
+			= new HashSet<PrintStream>();
+
+		@Test
+		public void test() {
+			PrintStream originalStream = System.out;
+			Result result = runClasses(TestClass.class);
+			assertThat(result.getFailures()).isEmpty();
+			assertThat(USED_STREAMS).hasSize(1);
+			assertThat(System.out).isSameAs(originalStream);
+		}
+
+		public static class TestClass {
+			@ClassRule
+			public static final SharedSystemOutAndSystemErr SHARED_STREAMS
+				= new SharedSystemOutAndSystemErr();
+
+			@Rule
+			public final SystemOutRule systemOutRule = new SystemOutRule()
+				.enableLog()
+				.mute();
+
+			@Test
+			public void first_test() {
+				USED_STREAMS.add(System.out);
+				System.out.print("first text");
+				assertThat(systemOutRule.getLog()).isEqualTo("first text");
+			}
+
+			@Test
+			public void second_test() {
+				USED_STREAMS.add(System.out);
+				System.out.print("second text");
+				assertThat(systemOutRule.getLog()).isEqualTo("second text");
+			}
+		}
+	}
+
+	public static class system_err_is_shared_by_all_tests_of_a_run_and_restored_afterwards_if_listener_is_registered {
+		private static final Set<PrintStream> USED_STREAMS
+			= new HashSet<PrintStream>();
+
+		@Test
+		public void test() {
+			PrintStream originalStream = System.err;
+			JUnitCore core = new JUnitCore();
+			core.addListener(new SharedSystemOutAndSystemErrListener());
+			Result result = core.run(TestClass.class);
+			assertThat(result.getFailures()).isEmpty();
+			assertThat(USED_STREAMS).hasSize(1);
+			assertThat(System.err).isSameAs(originalStream);
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Test
+			public void first_test() {
+				USED_STREAMS.add(System.err);
+				System.err.print("first text");
+				assertThat(systemErrRule.getLog()).isEqualTo("first text");
+			}
+
+			@Test
+			public void second_test() {
+				USED_STREAMS.add(System.err);
+				System.err.print("second text");
+				assertThat(systemErrRule.getLog()).isEqualTo("second text");
+			}
+		}
+	}
+
+	public static class chars_are_captured_while_the_shared_stream_is_installed {
+		@Test
+		public void test() {
+			Result result = runClasses(TestClass.class);
+			assertThat(result.getFailures()).isEmpty();
+		}
+
+		public static class TestClass {
+			@ClassRule
+			public static final SharedSystemOutAndSystemErr SHARED_STREAMS
+				= new SharedSystemOutAndSystemErr();
+
+			@Rule
+			public final SystemOutRule systemOutRule = new SystemOutRule()
+				.enableLog()
+				.mute()
+				.captureChars();
+
+			@Test
+			public void test() {
+				System.out.print("some text");
+				assertThat(systemOutRule.getLog()).isEqualTo("some text");
+			}
+		}
+	}
+
+	public static class shared_stream_cannot_be_uninstalled_if_it_is_not_installed {
+		@Test
+		public void test() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					SYSTEM_OUT.uninstallSharedStream();
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("The shared stream of System.out is not installed."
+					+ " Please call installSharedStream() first.");
+		}
+	}
+}
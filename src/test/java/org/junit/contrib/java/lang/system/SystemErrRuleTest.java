@@ -1,17 +1,40 @@
 package org.junit.contrib.java.lang.system;
 
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
 import static java.lang.String.format;
+import static java.lang.System.nanoTime;
 import static java.lang.System.setErr;
 import static java.lang.System.setProperty;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.regex.Pattern.compile;
+import static org.apache.commons.io.FileUtils.readFileToString;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.apache.commons.io.IOUtils.toByteArray;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
+import static org.junit.experimental.ParallelComputer.methods;
+import static org.junit.runner.JUnitCore.runClasses;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
 
+import com.github.stefanbirkner.fishbowl.Statement;
 import org.junit.*;
 import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.runner.Result;
 import org.junit.runner.RunWith;
 import org.junit.runner.notification.Failure;
 
@@ -386,4 +409,1532 @@ public class SystemErrRuleTest {
 			assertThat(systemErrRule.getLogAsBytes()).isEqualTo(data);
 		}
 	}
+
+	public static class output_of_parallel_tests_is_logged_separately_if_requested {
+		@Test
+		public void test() {
+			Result result = runClasses(methods(), TestClass.class);
+			assertThat(result.getFailures()).isEmpty();
+		}
+
+		public static class TestClass {
+			private static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.separateOutputOfParallelTests();
+
+			@Test
+			public void first_test() throws Exception {
+				writeTextWhileOtherTestIsWriting("first text");
+			}
+
+			@Test
+			public void second_test() throws Exception {
+				writeTextWhileOtherTestIsWriting("second text");
+			}
+
+			private void writeTextWhileOtherTestIsWriting(
+					String text) throws Exception {
+				BARRIER.await(10, SECONDS);
+				System.err.print(text);
+				BARRIER.await(10, SECONDS);
+				assertThat(systemErrRule.getLog()).isEqualTo(text);
+			}
+		}
+	}
+
+	public static class raw_bytes_of_output_are_readable_from_stream_when_logging_is_enabled {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog();
+
+		@Test
+		public void test() throws Exception {
+			byte[] data = { 1, 2, 3, 4, 5 };
+			System.err.write(data, 0, data.length);
+			assertThat(toByteArray(systemErrRule.getLogAsInputStream()))
+				.isEqualTo(data);
+		}
+	}
+
+	public static class large_text_is_logged_completely {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 300000; ++i)
+				sb.append("0123456789");
+			String text = sb.toString();
+			System.err.print(text);
+			assertThat(systemErrRule.getLog()).isEqualTo(text);
+		}
+	}
+
+	public static class only_the_last_bytes_are_logged_if_log_is_limited {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.keepLast(5)
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("dummy");
+			System.err.print(" te");
+			System.err.write('x');
+			System.err.print("t");
+			assertThat(systemErrRule.getLog()).isEqualTo(" text");
+		}
+	}
+
+	public static class number_of_dropped_bytes_is_provided_if_log_is_limited {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.keepLast(5)
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("dummy text");
+			assertThat(systemErrRule.getNumberOfDroppedBytes()).isEqualTo(5);
+		}
+	}
+
+	public static class text_is_logged_completely_if_log_is_spilled_to_disk {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.spillToDiskAbove(4)
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("dum");
+			System.err.print("my text");
+			System.err.write('!');
+			assertThat(systemErrRule.getLog()).isEqualTo("dummy text!");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class test_fails_as_soon_as_a_line_matches_if_requested {
+		private static final List<String> WRITTEN_LINES = new ArrayList<String>();
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.failOnLineMatching("ERR")
+				.mute();
+
+			@Test
+			public void test() {
+				for (String line: asList("first line", "ERROR", "last line")) {
+					System.err.println(line);
+					WRITTEN_LINES.add(line);
+				}
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage())
+				.isEqualTo("The line \"ERROR\" matches the pattern \"ERR\".");
+			assertThat(WRITTEN_LINES).containsExactly("first line");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class test_fails_if_a_line_that_is_written_by_another_thread_matches {
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.failOnLineMatching("ERR")
+				.mute();
+
+			@Test
+			public void test() throws Exception {
+				Thread thread = new Thread() {
+					@Override
+					public void run() {
+						try {
+							System.err.println("ERROR");
+						} catch (AssertionError ignored) {
+						}
+					}
+				};
+				thread.start();
+				thread.join();
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage())
+				.isEqualTo("The line \"ERROR\" matches the pattern \"ERR\".");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class test_fails_if_no_line_matches_within_the_expected_lines {
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.expectWithin(2, "started")
+				.mute();
+
+			@Test
+			public void test() {
+				System.err.println("first line");
+				System.err.println("second line");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage()).isEqualTo(
+				"None of the 2 lines matches the pattern \"started\". The last"
+					+ " line is \"second line\".");
+		}
+	}
+
+	public static class test_succeeds_if_a_line_matches_within_the_expected_lines {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.expectWithin(2, "started")
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.println("first line");
+			System.err.println("server started");
+			System.err.println("third line");
+		}
+	}
+
+	public static class log_contains_text_that_has_been_written_after_log_was_read {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("first text");
+			systemErrRule.getLog();
+			System.err.print(" second text");
+			assertThat(systemErrRule.getLog())
+				.isEqualTo("first text second text");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class line_separator_that_is_split_across_writes_is_normalized {
+		@ClassRule
+		public static final RestoreSystemProperties RESTORE_SYSTEM_PROPERTIES
+			= new RestoreSystemProperties();
+
+		@BeforeClass
+		public static void useWindowsLineSeparator() {
+			setProperty("line.separator", "\r\n");
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Test
+			public void test() {
+				System.err.print("dummy\r");
+				assertThat(systemErrRule.getLogWithNormalizedLineSeparator())
+					.isEqualTo("dummy\r");
+				System.err.print("\ntext\r\n");
+				assertThat(systemErrRule.getLogWithNormalizedLineSeparator())
+					.isEqualTo("dummy\ntext\n");
+			}
+		}
+
+		public static void verifyResult(Collection<Failure> failures) {
+			assertThat(failures).isEmpty();
+		}
+	}
+
+	public static class lines_of_the_log_are_available {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("first line\nsecond ");
+			System.err.print("line\r\nthird line");
+			assertThat(systemErrRule.getLineCount()).isEqualTo(3);
+			assertThat(systemErrRule.getLine(1)).isEqualTo("second line");
+			assertThat(systemErrRule.getLines(1, 3))
+				.containsExactly("second line", "third line");
+			assertThat(systemErrRule.lines())
+				.containsExactly("first line", "second line", "third line");
+		}
+	}
+
+	public static class lines_of_the_log_are_updated_after_new_text_has_been_written {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("first line\nsecond");
+			systemErrRule.getLineCount();
+			System.err.print(" line\n");
+			assertThat(systemErrRule.lines())
+				.containsExactly("first line", "second line");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class compressed_text_is_written_to_system_err_for_failing_test {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+		private static final String TEXT = createText();
+
+		private static String createText() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 100000; ++i)
+				sb.append("line ").append(i).append('\n');
+			return sb.toString();
+		}
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.muteForSuccessfulTests()
+				.compressFailureLog();
+
+			@Test
+			public void test() {
+				System.err.print(TEXT);
+				fail();
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(captureOutputStream.toString()).isEqualTo(TEXT);
+		}
+
+		public static void expectFailure(Failure failure) {
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	public static class log_contains_the_lines_of_all_threads_in_the_order_of_writing_if_captured_without_contention {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.captureWithoutContention();
+
+		@Test
+		public void test() throws Exception {
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; ++i) {
+				final String name = "thread " + i;
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						for (int j = 0; j < 1000; ++j)
+							System.err.println(name + " line " + j);
+					}
+				};
+				threads[i].start();
+			}
+			for (Thread thread: threads)
+				thread.join();
+			System.err.print("last line");
+			List<String> lines = systemErrRule.getLines(
+				0, systemErrRule.getLineCount());
+			assertThat(lines).hasSize(4001).endsWith("last line");
+			for (int i = 0; i < threads.length; ++i) {
+				List<String> linesOfThread = new ArrayList<String>();
+				for (String line: lines)
+					if (line.startsWith("thread " + i + " "))
+						linesOfThread.add(line);
+				for (int j = 0; j < 1000; ++j)
+					assertThat(linesOfThread.get(j))
+						.isEqualTo("thread " + i + " line " + j);
+			}
+		}
+	}
+
+	public static class log_that_is_read_while_threads_write_only_grows_if_captured_without_contention {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.captureWithoutContention();
+
+		@Test
+		public void test() throws Exception {
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; ++i) {
+				final String name = "thread " + i;
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						for (int j = 0; j < 2000; ++j)
+							System.err.println(name + " writes a line that fills"
+								+ " the buffer of the thread quickly " + j);
+					}
+				};
+				threads[i].start();
+			}
+			String previousLog = "";
+			boolean threadsAlive = true;
+			while (threadsAlive) {
+				threadsAlive = false;
+				for (Thread thread: threads)
+					threadsAlive |= thread.isAlive();
+				String log = systemErrRule.getLog();
+				assertThat(log).startsWith(previousLog);
+				previousLog = log;
+			}
+			assertThat(systemErrRule.getLineCount()).isEqualTo(8000);
+		}
+	}
+
+	public static class completed_lines_are_recorded_with_time_and_thread_if_requested {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.recordLineEvents();
+
+		@Test
+		public void test() throws Exception {
+			System.err.println("first line");
+			Thread thread = new Thread("dummy thread") {
+				@Override
+				public void run() {
+					System.err.println("second line");
+				}
+			};
+			thread.start();
+			thread.join();
+			System.err.print("incomplete line");
+			LineEvents events = systemErrRule.getLineEvents();
+			assertThat(events.size()).isEqualTo(2);
+			assertThat(events.getLine(0)).isEqualTo("first line");
+			assertThat(events.getThreadName(0))
+				.isEqualTo(Thread.currentThread().getName());
+			assertThat(events.getLine(1)).isEqualTo("second line");
+			assertThat(events.getThreadName(1)).isEqualTo("dummy thread");
+			assertThat(events.getThreadId(1)).isEqualTo(thread.getId());
+			assertThat(events.getNanosSinceStart(0)).isGreaterThanOrEqualTo(0);
+			assertThat(events.getNanoTime(1))
+				.isGreaterThanOrEqualTo(events.getNanoTime(0));
+			assertThat(events.indexOfFirstLineMatching("sec")).isEqualTo(1);
+		}
+	}
+
+	public static class lines_and_chunks_are_passed_to_consumers {
+		private final List<String> lines = new ArrayList<String>();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.forEachLine(new LineConsumer() {
+				public void accept(String line) {
+					lines.add(line);
+				}
+			})
+			.forEachChunk(new ChunkConsumer() {
+				public void accept(byte[] b, int offset, int length) {
+					bytes.write(b, offset, length);
+				}
+			});
+
+		@Test
+		public void test() {
+			System.err.print("first line\nsecond");
+			System.err.write('!');
+			System.err.print(" line\nincomplete line");
+			assertThat(lines).containsExactly("first line", "second! line");
+			assertThat(bytes.toString())
+				.isEqualTo("first line\nsecond! line\nincomplete line");
+			assertThat(systemErrRule.getLog()).isEmpty();
+		}
+	}
+
+	public static class call_sites_are_reported_if_requested {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.profileCallSites(1);
+
+		@Test
+		public void test() {
+			for (int i = 0; i < 10; ++i)
+				writeChattyText();
+			System.err.print("x");
+			String report = systemErrRule.getCallSiteReport();
+			String topCallSite = report.split(format("%n"))[2];
+			assertThat(topCallSite)
+				.contains("writeChattyText(SystemErrRuleTest.java:");
+			assertThat(report).contains("test(SystemErrRuleTest.java:");
+		}
+
+		private void writeChattyText() {
+			System.err.print("some chatty text");
+		}
+	}
+
+	public static class text_is_logged_completely_if_log_is_stored_off_heap {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.storeLogOffHeap();
+
+		@Test
+		public void test() {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 100000; ++i)
+				text.append("line ").append(i).append("\n");
+			System.err.print(text);
+			assertThat(systemErrRule.getLog()).isEqualTo(text.toString());
+			assertThat(systemErrRule.getLine(99999)).isEqualTo("line 99999");
+		}
+	}
+
+	public static class log_is_written_to_file {
+		@Rule
+		public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() throws Exception {
+			File file = temporaryFolder.newFile();
+			System.err.print("some text");
+			systemErrRule.writeLogTo(file);
+			assertThat(readFileToString(file)).isEqualTo("some text");
+		}
+	}
+
+	public static class log_that_is_spilled_to_disk_is_written_to_channel {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.spillToDiskAbove(4);
+
+		@Test
+		public void test() throws Exception {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			System.err.print("some text");
+			systemErrRule.writeLogTo(Channels.newChannel(stream));
+			assertThat(stream.toString()).isEqualTo("some text");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class output_is_written_to_file_for_failing_test_if_requested {
+		private static File file;
+
+		@BeforeClass
+		public static void createFile() throws Exception {
+			file = File.createTempFile("failure-log", ".txt");
+			file.deleteOnExit();
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.muteForSuccessfulTests()
+				.writeFailureLogTo(file);
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+				fail();
+			}
+		}
+
+		public static void verifyStateAfterTest() throws Exception {
+			assertThat(readFileToString(file)).isEqualTo("some text");
+		}
+
+		public static void expectFailure(Failure failure) {
+		}
+	}
+
+	public static class text_and_bytes_are_logged_if_log_is_captured_as_chars {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.captureChars();
+
+		@Test
+		public void test() {
+			System.err.print("some text");
+			System.err.write(' ');
+			System.err.write("and bytes".getBytes(), 0, 9);
+			System.err.print("\n");
+			assertThat(systemErrRule.getLog())
+				.isEqualTo("some text and bytes\n");
+			assertThat(systemErrRule.getLogAsBytes())
+				.isEqualTo("some text and bytes\n".getBytes());
+			assertThat(systemErrRule.getLine(0))
+				.isEqualTo("some text and bytes");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class text_is_written_to_system_err_completely_if_written_in_background {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.writeOutputInBackground();
+
+			@Test
+			public void test() {
+				for (int i = 0; i < 5000; ++i)
+					System.err.print("line " + i + "\n");
+				System.err.flush();
+				System.err.print("last line");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 5000; ++i)
+				text.append("line ").append(i).append("\n");
+			text.append("last line");
+			assertThat(captureOutputStream.toString())
+				.isEqualTo(text.toString());
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	public static class log_contains_only_complete_writes_while_other_thread_writes {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() throws Exception {
+			Thread writer = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; ++i)
+						System.err.print("0123456789\n");
+				}
+			};
+			writer.start();
+			while (writer.isAlive())
+				assertThat(systemErrRule.getLog().replace("0123456789\n", ""))
+					.isEmpty();
+			writer.join();
+			assertThat(systemErrRule.getLog()).hasSize(220000);
+		}
+	}
+
+	public static class log_matches_file_with_same_content {
+		@Rule
+		public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() throws Exception {
+			File file = temporaryFolder.newFile();
+			writeStringToFile(file, "first line\nsecond line\n");
+			System.err.print("first line\nsecond line\n");
+			systemErrRule.assertLogMatchesFile(file);
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class line_with_first_difference_is_reported_if_log_does_not_match_file {
+		private static File file;
+
+		@BeforeClass
+		public static void createFile() throws Exception {
+			file = File.createTempFile("golden", ".txt");
+			file.deleteOnExit();
+			writeStringToFile(file, "first line\nsecond line\nthird line\n");
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Test
+			public void test() throws Exception {
+				System.err.print("first line\nsecond lime\nthird line\n");
+				systemErrRule.assertLogMatchesFile(file);
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage()).isEqualTo(
+				"The log of System.err differs from the file " + file
+					+ " at line 2.\n"
+					+ "expected: \"second line\"\n"
+					+ "but was:  \"second lime\"");
+		}
+	}
+
+	public static class file_is_overwritten_by_log_if_golden_files_are_updated {
+		@Rule
+		public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.updateGoldenFiles();
+
+		@Test
+		public void test() throws Exception {
+			File file = temporaryFolder.newFile();
+			writeStringToFile(file, "old text");
+			System.err.print("new text");
+			systemErrRule.assertLogMatchesFile(file);
+			assertThat(readFileToString(file)).isEqualTo("new text");
+		}
+	}
+
+	public static class log_is_provided_as_char_sequence_that_includes_subsequent_text {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("first line\n");
+			CharSequence log = systemErrRule.getLogAsCharSequence();
+			System.err.print("took 17 ms\n");
+			assertThat(compile("took \\d+ ms").matcher(log).find()).isTrue();
+			assertThat(log.toString()).isEqualTo("first line\ntook 17 ms\n");
+		}
+	}
+
+	public static class writes_and_explicit_flushes_are_counted_if_requested {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.recordStats();
+
+		@Test
+		public void test() {
+			for (int i = 0; i < 3; ++i)
+				System.err.write('a');
+			System.err.write("bcd".getBytes(), 0, 3);
+			System.err.print("ef\n");
+			System.err.flush();
+			System.err.flush();
+			OutputStats stats = systemErrRule.getStats();
+			assertThat(stats.getNumberOfSingleByteWrites()).isEqualTo(3);
+			assertThat(stats.getNumberOfBulkWrites()).isEqualTo(2);
+			assertThat(stats.getBulkWriteSizeHistogram()[2]).isEqualTo(2);
+			assertThat(stats.getNumberOfFlushes()).isEqualTo(2);
+			assertThat(stats.getNumberOfBytes()).isEqualTo(9);
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class text_is_logged_and_written_to_system_err_once_if_captured_as_chars {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.captureChars();
+
+			@Test
+			public void test() {
+				System.err.print("abc");
+				assertThat(systemErrRule.getLog()).isEqualTo("abc");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(captureOutputStream.toString()).isEqualTo("abc");
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class text_is_logged_once_and_written_for_failing_test_if_captured_as_chars_and_muted_for_successful_tests {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.muteForSuccessfulTests()
+				.captureChars();
+
+			@Test
+			public void test() {
+				System.err.print("abc");
+				assertThat(systemErrRule.getLog()).isEqualTo("abc");
+				fail();
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getException()).isExactlyInstanceOf(AssertionError.class);
+			assertThat(captureOutputStream.toString()).isEqualTo("abc");
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	public static class stream_of_log_that_is_stored_off_heap_is_not_changed_by_clearing_the_log {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.storeLogOffHeap();
+
+		@Test
+		public void test() throws Exception {
+			System.err.print("first");
+			InputStream log = systemErrRule.getLogAsInputStream();
+			systemErrRule.clearLog();
+			System.err.print("other");
+			assertThat(new String(toByteArray(log))).isEqualTo("first");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class log_that_is_spilled_to_disk_can_be_read_by_outer_rule_after_the_test {
+		private static String logAfterTest;
+
+		public static class TestClass {
+			private final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute()
+				.spillToDiskAbove(0);
+
+			@Rule
+			public final TestRule chain = RuleChain
+				.outerRule(new ExternalResource() {
+					@Override
+					protected void after() {
+						logAfterTest = systemErrRule.getLog();
+					}
+				})
+				.around(systemErrRule);
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(logAfterTest).isEqualTo("some text");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class log_that_is_stored_off_heap_can_be_read_by_outer_rule_after_the_test {
+		private static String logAfterTest;
+
+		public static class TestClass {
+			private final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute()
+				.storeLogOffHeap();
+
+			@Rule
+			public final TestRule chain = RuleChain
+				.outerRule(new ExternalResource() {
+					@Override
+					protected void after() {
+						logAfterTest = systemErrRule.getLog();
+					}
+				})
+				.around(systemErrRule);
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(logAfterTest).isEqualTo("some text");
+		}
+	}
+
+	public static class chunk_consumer_is_called_by_different_threads_concurrently {
+		private final CyclicBarrier barrier = new CyclicBarrier(2);
+		private final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.captureWithoutContention()
+			.forEachChunk(new ChunkConsumer() {
+				public void accept(byte[] bytes, int offset, int length) {
+					if (length > 0 && bytes[offset] == 'x')
+						try {
+							//both threads must be in the consumer at once
+							barrier.await(5, SECONDS);
+						} catch (Exception e) {
+							errors.add(e);
+						}
+				}
+			});
+
+		@Test
+		public void test() throws Exception {
+			Thread[] threads = new Thread[2];
+			for (int i = 0; i < threads.length; ++i) {
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						System.err.print("x");
+					}
+				};
+				threads[i].start();
+			}
+			for (Thread thread: threads)
+				thread.join();
+			assertThat(errors).isEmpty();
+		}
+	}
+
+	public static class log_of_captured_chars_is_provided_as_char_sequence_that_includes_subsequent_text {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.captureChars();
+
+		@Test
+		public void test() {
+			System.err.print("first line\n");
+			CharSequence log = systemErrRule.getLogAsCharSequence();
+			System.err.print("took 17 ms\n");
+			assertThat(compile("took \\d+ ms").matcher(log).find()).isTrue();
+			assertThat(log.toString()).isEqualTo("first line\ntook 17 ms\n");
+		}
+	}
+
+	public static class char_sequence_of_long_log_provides_all_chars {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			CharSequence log = systemErrRule.getLogAsCharSequence();
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 10000; ++i) {
+				System.err.print(i + " ");
+				expected.append(i).append(" ");
+			}
+			assertThat(log.length()).isEqualTo(expected.length());
+			assertThat(log.toString()).isEqualTo(expected.toString());
+			assertThat(log.subSequence(4000, 9000).toString())
+				.isEqualTo(expected.substring(4000, 9000));
+			assertThat(log.charAt(8191)).isEqualTo(expected.charAt(8191));
+		}
+	}
+
+	public static class char_sequence_shows_new_log_after_clearing_the_log {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute();
+
+		@Test
+		public void test() {
+			System.err.print("first text");
+			CharSequence log = systemErrRule.getLogAsCharSequence();
+			systemErrRule.clearLog();
+			System.err.print("new text");
+			assertThat(log.toString()).isEqualTo("new text");
+		}
+	}
+
+	public static class lines_of_different_threads_are_checked_separately {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.failOnLineMatching("ab")
+			.mute();
+
+		@Test
+		public void test() throws Exception {
+			System.err.print("a");
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					System.err.println("b");
+				}
+			};
+			thread.start();
+			thread.join();
+			System.err.println("c");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class other_observers_receive_line_that_fails_the_test {
+		private static final List<String> CONSUMED_LINES = new ArrayList<String>();
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.failOnLineMatching("ERR")
+				.forEachLine(new LineConsumer() {
+					public void accept(String line) {
+						CONSUMED_LINES.add(line);
+					}
+				})
+				.mute();
+
+			@Test
+			public void test() {
+				try {
+					System.err.println("ERROR");
+				} catch (AssertionError ignored) {
+				}
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage())
+				.isEqualTo("The line \"ERROR\" matches the pattern \"ERR\".");
+			assertThat(CONSUMED_LINES).containsExactly("ERROR");
+		}
+	}
+
+	public static class lines_are_decoded_with_the_encoding_of_the_log {
+		private final List<String> consumedLines = new ArrayList<String>();
+
+		private final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.forEachLine(new LineConsumer() {
+				public void accept(String line) {
+					consumedLines.add(line);
+				}
+			})
+			.mute();
+
+		@Rule
+		public final TestRule chain = RuleChain
+			.outerRule(new ProvideSystemProperty("file.encoding", "ISO-8859-1"))
+			.around(systemErrRule);
+
+		@Test
+		public void test() {
+			System.err.write(new byte[] { (byte) 0xE4, '\n' }, 0, 2);
+			assertThat(consumedLines).containsExactly("\u00e4");
+			assertThat(systemErrRule.getLog()).isEqualTo("\u00e4\n");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class incomplete_lines_are_passed_to_line_consumer_after_the_test {
+		private static final List<String> CONSUMED_LINES
+			= new CopyOnWriteArrayList<String>();
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.forEachLine(new LineConsumer() {
+					public void accept(String line) {
+						CONSUMED_LINES.add(line);
+					}
+				})
+				.mute();
+
+			@Test
+			public void test() throws Exception {
+				System.err.println("first line");
+				Thread thread = new Thread() {
+					@Override
+					public void run() {
+						System.err.print("incomplete line of thread");
+					}
+				};
+				thread.start();
+				thread.join();
+				System.err.print("last line");
+				assertThat(CONSUMED_LINES).containsExactly("first line");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(CONSUMED_LINES).containsOnly("first line",
+				"incomplete line of thread", "last line");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class incomplete_line_is_passed_to_line_consumer_after_failing_test {
+		private static final List<String> CONSUMED_LINES
+			= new CopyOnWriteArrayList<String>();
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.forEachLine(new LineConsumer() {
+					public void accept(String line) {
+						CONSUMED_LINES.add(line);
+					}
+				})
+				.mute();
+
+			@Test
+			public void test() {
+				System.err.print("last line");
+				fail("some failure");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage()).isEqualTo("some failure");
+			assertThat(CONSUMED_LINES).containsExactly("last line");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class call_sites_are_written_after_successful_test {
+		private static String outputOfTest;
+
+		public static class TestClass {
+			private final SystemErrRule outerRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Rule
+			public final TestRule chain = RuleChain
+				.outerRule(new ExternalResource() {
+					@Override
+					protected void after() {
+						outputOfTest = outerRule.getLog();
+					}
+				})
+				.around(outerRule)
+				.around(new SystemErrRule().profileCallSites(1));
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+			}
+		}
+
+		public static void verifyStateAfterTest() {
+			assertThat(outputOfTest)
+				.startsWith("some textCall sites of System.err: 1 writes");
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class call_sites_are_written_after_failing_test {
+		private static String outputOfTest;
+
+		public static class TestClass {
+			private final SystemErrRule outerRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Rule
+			public final TestRule chain = RuleChain
+				.outerRule(new ExternalResource() {
+					@Override
+					protected void after() {
+						outputOfTest = outerRule.getLog();
+					}
+				})
+				.around(outerRule)
+				.around(new SystemErrRule().profileCallSites(1));
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+				fail("some failure");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(outputOfTest)
+				.startsWith("some textCall sites of System.err: 1 writes");
+		}
+	}
+
+	public static class start_time_of_line_events_is_reset_by_clearing_the_log {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.enableLog()
+			.mute()
+			.recordLineEvents();
+
+		@Test
+		public void test() {
+			System.err.println("first line");
+			long timeBeforeClear = nanoTime();
+			systemErrRule.clearLog();
+			System.err.println("second line");
+			LineEvents events = systemErrRule.getLineEvents();
+			assertThat(events.getStartTime())
+				.isGreaterThanOrEqualTo(timeBeforeClear);
+			assertThat(events.size()).isEqualTo(1);
+			assertThat(events.getLine(0)).isEqualTo("second line");
+		}
+	}
+
+	public static class line_events_are_not_changed_by_subsequent_lines {
+		@Rule
+		public final SystemErrRule systemErrRule = new SystemErrRule()
+			.mute()
+			.recordLineEvents();
+
+		@Test
+		public void test() {
+			System.err.println("first line");
+			LineEvents events = systemErrRule.getLineEvents();
+			for (int i = 0; i < 1000; ++i)
+				System.err.println("line " + i);
+			systemErrRule.clearLog();
+			System.err.println("new line");
+			assertThat(events.size()).isEqualTo(1);
+			assertThat(events.getLine(0)).isEqualTo("first line");
+			assertThat(systemErrRule.getLineEvents().getLine(0))
+				.isEqualTo("new line");
+		}
+	}
+
+	public static class storages_of_the_log_cannot_be_combined {
+		@Test
+		public void keepLast_cannot_be_combined_with_spillToDiskAbove() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().keepLast(10).spillToDiskAbove(10);
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("The log is already stored by keepLast(int),"
+					+ " therefore spillToDiskAbove(long) cannot be used, too.");
+		}
+
+		@Test
+		public void storeLogOffHeap_cannot_be_combined_with_captureChars() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().storeLogOffHeap().captureChars();
+				}
+			});
+			assertThat(exception).isInstanceOf(IllegalStateException.class);
+		}
+
+		@Test
+		public void captureChars_cannot_be_combined_with_captureWithoutContention() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().captureChars().captureWithoutContention();
+				}
+			});
+			assertThat(exception).isInstanceOf(IllegalStateException.class);
+		}
+
+		@Test
+		public void captureWithoutContention_cannot_be_combined_with_separateOutputOfParallelTests() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().captureWithoutContention()
+						.separateOutputOfParallelTests();
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("The output is already captured by"
+					+ " captureWithoutContention(), therefore"
+					+ " separateOutputOfParallelTests() cannot be used, too.");
+		}
+
+		@Test
+		public void separateOutputOfParallelTests_cannot_be_combined_with_captureWithoutContention() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().separateOutputOfParallelTests()
+						.captureWithoutContention();
+				}
+			});
+			assertThat(exception).isInstanceOf(IllegalStateException.class);
+		}
+
+		@Test
+		public void keepLast_cannot_be_combined_with_compressFailureLog() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().keepLast(10).compressFailureLog();
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("The failure log is already stored by"
+					+ " keepLast(int), therefore compressFailureLog() cannot"
+					+ " be used, too.");
+		}
+
+		@Test
+		public void compressFailureLog_cannot_be_combined_with_storeLogOffHeap() {
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					new SystemErrRule().compressFailureLog().storeLogOffHeap();
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("The failure log is already compressed by"
+					+ " compressFailureLog(), therefore storeLogOffHeap()"
+					+ " cannot be used, too.");
+		}
+
+		@Test
+		public void keepLast_can_be_called_again() {
+			new SystemErrRule().keepLast(10).keepLast(20);
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class captured_chars_can_be_combined_with_compressed_failure_log {
+		private static String logOfTest;
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.muteForSuccessfulTests()
+				.compressFailureLog()
+				.captureChars();
+
+			@Test
+			public void test() {
+				System.err.print("some text");
+				logOfTest = systemErrRule.getLog();
+				fail("some failure");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(logOfTest).isEqualTo("some text");
+		}
+	}
+
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class line_separator_that_is_split_across_segments_of_the_decoded_text_is_normalized {
+		@ClassRule
+		public static final RestoreSystemProperties RESTORE_SYSTEM_PROPERTIES
+			= new RestoreSystemProperties();
+
+		@BeforeClass
+		public static void useWindowsLineSeparator() {
+			setProperty("line.separator", "\r\n");
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.enableLog()
+				.mute();
+
+			@Test
+			public void test() {
+				StringBuilder longText = new StringBuilder();
+				for (int i = 0; i < 4095; ++i)
+					longText.append('x');
+				System.err.print(longText + "\r\ntext\r\r\n");
+				assertThat(systemErrRule.getLogWithNormalizedLineSeparator())
+					.isEqualTo(longText + "\ntext\r\n");
+			}
+		}
+
+		public static void verifyResult(Collection<Failure> failures) {
+			assertThat(failures).isEmpty();
+		}
+	}
+
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class failure_of_interrupted_test_is_reported_if_written_in_background {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.writeOutputInBackground();
+
+			@Test
+			public void test() {
+				System.err.print("dummy text");
+				Thread.currentThread().interrupt();
+				fail("failure of the test");
+			}
+		}
+
+		public static void expectFailure(Failure failure) {
+			assertThat(failure.getMessage()).isEqualTo("failure of the test");
+		}
+
+		public static void verifyStateAfterTest() {
+			//the interrupt is kept for the code after the test
+			Thread.interrupted();
+			assertThat(captureOutputStream.toString()).isEqualTo("dummy text");
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	@RunWith(AcceptanceTestRunner.class)
+	public static class text_of_other_thread_is_written_completely_while_background_writer_finishes {
+		private static PrintStream originalStream;
+		private static ByteArrayOutputStream captureOutputStream;
+		private static Thread otherThread;
+
+		@BeforeClass
+		public static void replaceSystemOut() {
+			originalStream = System.err;
+			captureOutputStream = new ByteArrayOutputStream();
+			setErr(new PrintStream(captureOutputStream));
+		}
+
+		public static class TestClass {
+			@Rule
+			public final SystemErrRule systemErrRule = new SystemErrRule()
+				.writeOutputInBackground();
+
+			@Test
+			public void test() {
+				final PrintStream stream = System.err;
+				otherThread = new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < 20000; ++i)
+							stream.print("line " + i + "\n");
+					}
+				};
+				otherThread.start();
+			}
+		}
+
+		public static void verifyStateAfterTest() throws Exception {
+			otherThread.join();
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 20000; ++i)
+				text.append("line ").append(i).append("\n");
+			assertThat(captureOutputStream.toString())
+				.isEqualTo(text.toString());
+		}
+
+		@AfterClass
+		public static void restoreOriginalStream() {
+			setErr(originalStream);
+		}
+	}
+
+	public static class stats_cannot_be_read_if_they_are_not_recorded {
+		@Test
+		public void test() {
+			final SystemErrRule systemErrRule = new SystemErrRule();
+			Throwable exception = exceptionThrownBy(new Statement() {
+				public void evaluate() {
+					systemErrRule.getStats();
+				}
+			});
+			assertThat(exception)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Write statistics are not recorded. Please call"
+					+ " recordStats() when you create the rule.");
+		}
+	}
 }